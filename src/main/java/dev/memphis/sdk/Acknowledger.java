@@ -0,0 +1,108 @@
+package dev.memphis.sdk;
+
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.impl.AckType;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Acknowledges messages in bulk.  The fire-and-forget methods queue one
+ * reply per message and flush the connection once for the whole list,
+ * instead of leaving each reply to be written on its own.  The ackAsync
+ * methods wait for the broker to confirm each ack.
+ *
+ * Obtain one from MemphisAsyncConsumer.getAcknowledger() or
+ * MemphisSyncConsumer.getAcknowledger().
+ */
+public class Acknowledger {
+    private final Connection connection;
+    private final Duration timeout;
+
+    public Acknowledger(Connection connection, Duration timeout) {
+        this.connection = connection;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Acknowledges every message without waiting for confirmation.
+     */
+    public void ack(List<MemphisMessage> messages) {
+        forEach(messages, Message::ack);
+    }
+
+    /**
+     * Tells the broker to redeliver every message right away.
+     */
+    public void nak(List<MemphisMessage> messages) {
+        forEach(messages, Message::nak);
+    }
+
+    /**
+     * Tells the broker to redeliver every message after the delay.
+     */
+    public void nakWithDelay(List<MemphisMessage> messages, Duration delay) {
+        forEach(messages, msg -> msg.nakWithDelay(delay));
+    }
+
+    /**
+     * Resets the ack wait time of every message, for messages whose
+     * processing takes longer than ConsumerOptions.maxAckTimeMs.
+     */
+    public void inProgress(List<MemphisMessage> messages) {
+        forEach(messages, Message::inProgress);
+    }
+
+    /**
+     * Tells the broker never to redeliver the messages.
+     */
+    public void term(List<MemphisMessage> messages) {
+        forEach(messages, Message::term);
+    }
+
+    private void forEach(List<MemphisMessage> messages, Consumer<Message> reply) {
+        for(MemphisMessage message : messages) {
+            reply.accept(message.getNatsMessage());
+        }
+        try {
+            connection.flushBuffer();
+        } catch(IOException e) {
+            // the replies stay queued and go out with the next write
+        }
+    }
+
+    /**
+     * Acknowledges a message and waits for the broker to confirm it.
+     * @return a future completed once the ack is confirmed, or exceptionally if it is not confirmed in time
+     */
+    public CompletableFuture<Void> ackAsync(MemphisMessage message) {
+        String replyTo = message.getNatsMessage().getReplyTo();
+        if(replyTo == null) {
+            return CompletableFuture.failedFuture(new MemphisException("Message cannot be acknowledged."));
+        }
+        return connection.requestWithTimeout(replyTo, AckType.AckAck.bodyBytes(-1), timeout)
+                .thenApply(reply -> null);
+    }
+
+    /**
+     * Acknowledges every message and waits for the broker to confirm them.
+     * @return a future completed once all acks are confirmed, or exceptionally if any is not
+     */
+    public CompletableFuture<Void> ackAsync(List<MemphisMessage> messages) {
+        List<CompletableFuture<Void>> confirmations = new ArrayList<>(messages.size());
+        for(MemphisMessage message : messages) {
+            confirmations.add(ackAsync(message));
+        }
+        try {
+            connection.flushBuffer();
+        } catch(IOException e) {
+            // the requests stay queued and go out with the next write
+        }
+        return CompletableFuture.allOf(confirmations.toArray(new CompletableFuture<?>[0]));
+    }
+}
@@ -1,6 +1,9 @@
 package dev.memphis.sdk;
 
+import dev.memphis.sdk.consumer.KeepAliveListener;
+
 import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class ClientOptions {
     public final String host;
@@ -15,7 +18,12 @@ public class ClientOptions {
     public final Duration maxWaitTime;
     public final int batchSize;
     public final Duration pullInterval;
+    public final boolean prefetch;
     public final int accountId;
+    public final ScheduledExecutorService consumerExecutor;
+    public final boolean virtualThreads;
+    public final KeepAliveListener keepAliveListener;
+    public final long maxPrefetchedBytes;
 
     private ClientOptions(Builder b) {
         this.host = b.host;
@@ -30,7 +38,12 @@ public class ClientOptions {
         this.maxWaitTime = b.maxWaitTime;
         this.batchSize = b.batchSize;
         this.pullInterval = b.pullInterval;
+        this.prefetch = b.prefetch;
         this.accountId = b.accountId;
+        this.consumerExecutor = b.consumerExecutor;
+        this.virtualThreads = b.virtualThreads;
+        this.keepAliveListener = b.keepAliveListener;
+        this.maxPrefetchedBytes = b.maxPrefetchedBytes;
     }
 
     /**
@@ -115,8 +128,13 @@ public class ClientOptions {
         private Duration maxWaitTime = Duration.ofMillis(5000);
         private int batchSize = 10;
         private Duration pullInterval = Duration.ofMillis(1000);
+        private boolean prefetch = false;
         // on-premise version defaults to account id of 1
         private int accountId = 1;
+        private ScheduledExecutorService consumerExecutor = null;
+        private boolean virtualThreads = false;
+        private KeepAliveListener keepAliveListener = null;
+        private long maxPrefetchedBytes = 0;
 
         /***
          *
@@ -138,6 +156,14 @@ public class ClientOptions {
                 throw new MemphisConnectException("Must provide a username");
             }
 
+            if(maxPrefetchedBytes < 0) {
+                throw new MemphisConnectException("maxPrefetchedBytes cannot be negative.");
+            }
+
+            if(virtualThreads && Runtime.version().feature() < 21) {
+                throw new MemphisConnectException("Virtual threads require Java 21 or later.");
+            }
+
             return new ClientOptions(this);
         }
 
@@ -261,6 +287,17 @@ public class ClientOptions {
             return this;
         }
 
+        /***
+         *
+         * @param prefetch whether async consumers pull the next batch while the callback processes the current one,
+         *                 waiting pullInterval only after an empty batch, defaults to false
+         * @return the Builder object for chaining purpose
+         */
+        public Builder prefetch(boolean prefetch) {
+            this.prefetch = prefetch;
+            return this;
+        }
+
         /***
          *
          * @param batchSize maximum number of messages to grab from the broker per batch
@@ -271,6 +308,51 @@ public class ClientOptions {
             return this;
         }
 
+        /***
+         *
+         * @param consumerExecutor executor that runs the fetches, callbacks and keep-alives of every consumer
+         *                         created over the connection; defaults to a pool with one daemon thread per core,
+         *                         owned and shut down by the connection
+         * @return the Builder object for chaining purpose
+         */
+        public Builder consumerExecutor(ScheduledExecutorService consumerExecutor) {
+            this.consumerExecutor = consumerExecutor;
+            return this;
+        }
+
+        /***
+         *
+         * @param virtualThreads whether to run consumer callbacks on virtual threads, so blocking callbacks do not
+         *                       hold up the consumer executor; requires Java 21 or later, defaults to false
+         * @return the Builder object for chaining purpose
+         */
+        public Builder virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /***
+         *
+         * @param keepAliveListener notified when a consumer keep-alive fails, defaults to none
+         * @return the Builder object for chaining purpose
+         */
+        public Builder keepAliveListener(KeepAliveListener keepAliveListener) {
+            this.keepAliveListener = keepAliveListener;
+            return this;
+        }
+
+        /***
+         *
+         * @param maxPrefetchedBytes maximum number of bytes the open pull requests of all consumers of the connection
+         *                           may bring in before their messages are delivered; pulls are held back while
+         *                           it is reached. Defaults to 0, no limit
+         * @return the Builder object for chaining purpose
+         */
+        public Builder maxPrefetchedBytes(long maxPrefetchedBytes) {
+            this.maxPrefetchedBytes = maxPrefetchedBytes;
+            return this;
+        }
+
         /***
          *
          * @param accountId account id
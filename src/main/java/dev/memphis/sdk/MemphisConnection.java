@@ -1,9 +1,14 @@
 package dev.memphis.sdk;
 
 import dev.memphis.sdk.brokerrequests.BrokerConfigurationManager;
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
 import dev.memphis.sdk.consumer.ConsumerOptions;
+import dev.memphis.sdk.consumer.KeepAliveService;
+import dev.memphis.sdk.consumer.MemoryBudget;
 import dev.memphis.sdk.consumer.MemphisConsumerCallback;
 import dev.memphis.sdk.consumer.MemphisAsyncConsumer;
+import dev.memphis.sdk.consumer.MemphisPublisherConsumer;
+import dev.memphis.sdk.consumer.MemphisPushConsumer;
 import dev.memphis.sdk.consumer.MemphisSyncConsumer;
 import dev.memphis.sdk.producer.ProducerOptions;
 import dev.memphis.sdk.producer.MemphisProducer;
@@ -16,18 +21,44 @@ import nl.altindag.ssl.util.PemUtils;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.X509ExtendedKeyManager;
 import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class MemphisConnection {
+    private static final Duration KEEP_ALIVE_INTERVAL = Duration.ofSeconds(10);
 
     private final Connection brokerConnection;
     private final ClientOptions opts;
     private final String connectionId;
     private final BrokerConfigurationManager manager;
+    private final ScheduledExecutorService consumerExecutor;
+    private final boolean ownsConsumerExecutor;
+    private final ExecutorService callbackExecutor;
+    private final KeepAliveService keepAliveService;
+    private final MemoryBudget memoryBudget;
+    private final PartitionsUpdateSubscriber partitionsUpdates;
+
+    /**
+     * Opens the broker connection; Nats::connect outside of tests.
+     */
+    interface Connector {
+        Connection connect(Options options) throws IOException, InterruptedException;
+    }
 
     public MemphisConnection(ClientOptions opts) throws MemphisConnectException {
+        this(opts, Nats::connect, MemphisConnection::createConsumerExecutor);
+    }
+
+    MemphisConnection(ClientOptions opts, Connector connector, Supplier<ScheduledExecutorService> consumerExecutorFactory) throws MemphisConnectException {
         this.opts = opts;
 
         UUID uuid = UUID.randomUUID();
@@ -67,13 +98,77 @@ public class MemphisConnection {
 
         Options natsConnOptions = natsConnOptsBuilder.build();
 
+        memoryBudget = new MemoryBudget(opts.maxPrefetchedBytes, null);
+        ownsConsumerExecutor = opts.consumerExecutor == null;
+
+        // the executors are created once connected, and shut down along
+        // with the connection if the rest of the setup fails
+        Connection connection = null;
+        ScheduledExecutorService consumers = null;
+        ExecutorService callbacks = null;
         try {
-            this.brokerConnection = Nats.connect(natsConnOptions);
+            connection = connector.connect(natsConnOptions);
+            consumers = ownsConsumerExecutor ? consumerExecutorFactory.get() : opts.consumerExecutor;
+            callbacks = opts.virtualThreads ? createVirtualThreadExecutor(Executors.class) : null;
 
-            manager = new BrokerConfigurationManager(brokerConnection, connectionId, opts.username);
+            manager = new BrokerConfigurationManager(connection, connectionId, opts.username);
+            keepAliveService = new KeepAliveService(connection.jetStreamManagement(), consumers,
+                    KEEP_ALIVE_INTERVAL, opts.keepAliveListener);
+            partitionsUpdates = new PartitionsUpdateSubscriber(connection);
+        } catch (MemphisConnectException e) {
+            release(connection, ownsConsumerExecutor ? consumers : null, callbacks);
+            throw e;
         } catch (Exception e) {
+            release(connection, ownsConsumerExecutor ? consumers : null, callbacks);
             throw new MemphisConnectException("Error occurred while connecting to Memphis: " + e.getMessage());
         }
+        this.brokerConnection = connection;
+        this.consumerExecutor = consumers;
+        this.callbackExecutor = callbacks;
+    }
+
+    /**
+     * Releases what a failed constructor had set up; null arguments are
+     * skipped.
+     */
+    private static void release(Connection connection, ExecutorService consumers, ExecutorService callbacks) {
+        if(consumers != null) {
+            consumers.shutdownNow();
+        }
+        if(callbacks != null) {
+            callbacks.shutdownNow();
+        }
+        if(connection != null) {
+            try {
+                connection.close();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static ScheduledExecutorService createConsumerExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "memphis-consumer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Looked up reflectively so the SDK still targets Java 11, where the
+     * lookup fails with a MemphisConnectException.
+     * @param executors the class providing newVirtualThreadPerTaskExecutor, Executors outside of tests
+     */
+    static ExecutorService createVirtualThreadExecutor(Class<?> executors) throws MemphisConnectException {
+        try {
+            return (ExecutorService) executors.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e) {
+            throw new MemphisConnectException("Virtual threads are not available: " + e.getMessage());
+        }
     }
 
     /**
@@ -81,6 +176,14 @@ public class MemphisConnection {
      * @throws InterruptedException
      */
     public void close() throws InterruptedException {
+        keepAliveService.close();
+        partitionsUpdates.close();
+        if(ownsConsumerExecutor) {
+            consumerExecutor.shutdownNow();
+        }
+        if(callbackExecutor != null) {
+            callbackExecutor.shutdownNow();
+        }
         if(isConnected()) {
             brokerConnection.close();
         }
@@ -94,6 +197,20 @@ public class MemphisConnection {
         return brokerConnection.getStatus() == Connection.Status.CONNECTED;
     }
 
+    /**
+     * @return the service keeping this connection's consumers alive, which caches their consumer info
+     */
+    public KeepAliveService getKeepAliveService() {
+        return keepAliveService;
+    }
+
+    /**
+     * @return the budget bounding the bytes prefetched by this connection's consumers
+     */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
     /**
      * Creates a producer for sending messages to a station.
      * @param producerOptions Configuration parameters for creating producer
@@ -102,21 +219,23 @@ public class MemphisConnection {
      */
     public MemphisProducer createProducer(ProducerOptions producerOptions) throws MemphisException {
         List<Integer> partitions = manager.registerNewProducer(producerOptions).partitionsList;
-        return new MemphisProducer(brokerConnection, connectionId, producerOptions, partitions);
+        return new MemphisProducer(brokerConnection, connectionId, producerOptions, partitions, partitionsUpdates);
     }
 
     /**
      * Creates an asynchronous consumer that consumes messages over this connection.
      * The consumer takes a callback function used to process the messages.
-     * The callback is executed in a background thread when new messages
-     * arrive.
+     * The callback is executed on the connection's consumer executor, or on
+     * a virtual thread if ClientOptions.virtualThreads is set, when new
+     * messages arrive.
      * @param consumerOptions Configuration parameters for creating consumer
      * @param callbackFunction callback function that is called on each batch of messages
      * @return an instance of MemphisAsyncConsumer
      */
     public MemphisAsyncConsumer createAsyncConsumer(ConsumerOptions consumerOptions, MemphisConsumerCallback callbackFunction) throws MemphisException {
         List<Integer> partitions = manager.registerNewConsumer(consumerOptions).partitionsList;
-        return new MemphisAsyncConsumer(brokerConnection, opts, consumerOptions, partitions, callbackFunction);
+        return new MemphisAsyncConsumer(brokerConnection, opts, consumerOptions, partitions, callbackFunction,
+                consumerExecutor, callbackExecutor, keepAliveService, memoryBudget, partitionsUpdates);
     }
 
     /**
@@ -129,7 +248,36 @@ public class MemphisConnection {
      */
     public MemphisSyncConsumer createSyncConsumer(ConsumerOptions consumerOptions) throws MemphisException {
         List<Integer> partitions = manager.registerNewConsumer(consumerOptions).partitionsList;
-        return new MemphisSyncConsumer(brokerConnection, opts, consumerOptions, partitions);
+        return new MemphisSyncConsumer(brokerConnection, opts, consumerOptions, partitions, keepAliveService, memoryBudget,
+                partitionsUpdates);
+    }
+
+    /**
+     * Creates a consumer that publishes messages to a Flow.Subscriber,
+     * pulling from the broker only as many messages as the subscriber
+     * requests.
+     * @param consumerOptions Configuration parameters for creating consumer
+     * @return an instance of MemphisPublisherConsumer
+     */
+    public MemphisPublisherConsumer createPublisherConsumer(ConsumerOptions consumerOptions) throws MemphisException {
+        List<Integer> partitions = manager.registerNewConsumer(consumerOptions).partitionsList;
+        return new MemphisPublisherConsumer(brokerConnection, opts, consumerOptions, partitions, consumerExecutor, keepAliveService,
+                memoryBudget, partitionsUpdates);
+    }
+
+    /**
+     * Creates a consumer to which the broker pushes messages as they
+     * arrive, for lower latency than polling.  The callback is executed
+     * for each message on a thread of the consumer's own, or on a virtual
+     * thread if ClientOptions.virtualThreads is set.
+     * @param consumerOptions Configuration parameters for creating consumer
+     * @param callbackFunction callback function that is called with each message
+     * @return an instance of MemphisPushConsumer
+     */
+    public MemphisPushConsumer createPushConsumer(ConsumerOptions consumerOptions, MemphisConsumerCallback callbackFunction) throws MemphisException {
+        List<Integer> partitions = manager.registerNewConsumer(consumerOptions).partitionsList;
+        return new MemphisPushConsumer(brokerConnection, opts, consumerOptions, partitions, callbackFunction,
+                consumerExecutor, callbackExecutor, keepAliveService, partitionsUpdates);
     }
 
     public Future<Station> createStation() {
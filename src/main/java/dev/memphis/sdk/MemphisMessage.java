@@ -1,21 +1,235 @@
 package dev.memphis.sdk;
 
+import dev.memphis.sdk.compression.CompressionCodec;
+import dev.memphis.sdk.compression.CompressionCodecs;
 import io.nats.client.Message;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsJetStreamMetaData;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class MemphisMessage {
-    private final Message message;
-    private final String consumerGroup;
+    private Message message;
+    private String consumerGroup;
+    private byte[] data;
+    private NatsJetStreamMetaData metaData;
+    private int partition = -1;
 
     public MemphisMessage(Message message, String consumerGroup) {
         this.message = message;
         this.consumerGroup = consumerGroup;
     }
 
+    /**
+     * Returns the message body.  Payloads compressed by the producer are
+     * decompressed on the first call and the result is kept.
+     * @throws UncheckedIOException if a compressed payload cannot be decompressed
+     */
     public byte[] getData() {
-        return message.getData();
+        if(data == null) {
+            data = decode();
+        }
+        return data;
+    }
+
+    private byte[] decode() {
+        String codecName = message.hasHeaders() ? message.getHeaders().getFirst(CompressionCodec.HEADER) : null;
+        if(codecName == null) {
+            return message.getData();
+        }
+
+        CompressionCodec codec = CompressionCodecs.forName(codecName);
+        if(codec == null) {
+            throw new UncheckedIOException(new IOException("Unknown compression codec: " + codecName));
+        }
+        try {
+            return codec.decompress(message.getData(), CompressionCodecs.getMaxDecompressedSize());
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the message body, without copying it.
+     * Compressed payloads are decompressed as by getData().
+     */
+    public ByteBuffer getDataBuffer() {
+        return ByteBuffer.wrap(getData()).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the first value of the header, or null if the message does not have it
+     */
+    public String getHeader(String name) {
+        return message.hasHeaders() ? message.getHeaders().getFirst(name) : null;
+    }
+
+    /**
+     * @return a read-only view of all headers, empty if the message has none
+     */
+    public Map<String, List<String>> getHeaders() {
+        if(!message.hasHeaders()) {
+            return Collections.emptyMap();
+        }
+        Headers headers = message.getHeaders();
+        return new AbstractMap<>() {
+            @Override
+            public List<String> get(Object key) {
+                List<String> values = key instanceof String ? headers.get((String) key) : null;
+                return values != null ? Collections.unmodifiableList(values) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String && headers.containsKey((String) key);
+            }
+
+            @Override
+            public int size() {
+                return headers.size();
+            }
+
+            @Override
+            public Set<Entry<String, List<String>>> entrySet() {
+                return Collections.unmodifiableSet(headers.entrySet());
+            }
+        };
+    }
+
+    /**
+     * @return the sequence of the message in its station partition, or 0 if it was not consumed from a station
+     */
+    public long getSequence() {
+        NatsJetStreamMetaData meta = metaData();
+        return meta != null ? meta.streamSequence() : 0;
+    }
+
+    /**
+     * @return the sequence of the delivery within the consumer group, or 0 if it was not consumed from a station
+     */
+    public long getConsumerSequence() {
+        NatsJetStreamMetaData meta = metaData();
+        return meta != null ? meta.consumerSequence() : 0;
+    }
+
+    /**
+     * @return the time the message was stored by the broker, or null if it was not consumed from a station
+     */
+    public Instant getTimestamp() {
+        NatsJetStreamMetaData meta = metaData();
+        return meta != null ? meta.timestamp().toInstant() : null;
+    }
+
+    /**
+     * @return the number of times the message was delivered before this delivery
+     */
+    public long getRedeliveryCount() {
+        NatsJetStreamMetaData meta = metaData();
+        return meta != null ? Math.max(meta.deliveredCount() - 1, 0) : 0;
+    }
+
+    /**
+     * The metadata is parsed from the reply subject on first use.
+     */
+    private NatsJetStreamMetaData metaData() {
+        if(metaData == null && message.isJetStream()) {
+            metaData = message.metaData();
+        }
+        return metaData;
+    }
+
+    /**
+     * @return the station partition the message was consumed from, or 0 if it cannot be told
+     */
+    public int getPartition() {
+        if(partition < 0) {
+            partition = parsePartition();
+        }
+        return partition;
+    }
+
+    private int parsePartition() {
+        String subject = message.getSubject();
+        int start = subject == null ? -1 : subject.lastIndexOf('$');
+        int end = subject == null ? -1 : subject.indexOf('.', start + 1);
+        if(start < 0 || end < 0) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(subject, start + 1, end, 10);
+        } catch(NumberFormatException e) {
+            return 0;
+        }
     }
 
     public void ack() {
         message.ack();
     }
+
+    /**
+     * Tells the broker to redeliver the message right away.
+     */
+    public void nak() {
+        message.nak();
+    }
+
+    /**
+     * Tells the broker to redeliver the message after the delay.
+     */
+    public void nakWithDelay(Duration delay) {
+        message.nakWithDelay(delay);
+    }
+
+    /**
+     * Resets the ack wait time, for messages whose processing takes
+     * longer than ConsumerOptions.maxAckTimeMs.
+     */
+    public void inProgress() {
+        message.inProgress();
+    }
+
+    /**
+     * Tells the broker never to redeliver the message.
+     */
+    public void term() {
+        message.term();
+    }
+
+    /**
+     * Returns a wrapper of its own for the same received message.  A
+     * consumer with ConsumerOptions.reuseMessages reuses the wrappers it
+     * hands out, so callbacks that keep messages past their return, or
+     * pass them to other threads, keep copies instead.
+     */
+    public MemphisMessage copy() {
+        MemphisMessage copy = new MemphisMessage(message, consumerGroup);
+        copy.data = data;
+        copy.metaData = metaData;
+        copy.partition = partition;
+        return copy;
+    }
+
+    /**
+     * Points a recycled wrapper at another message.
+     */
+    void reset(Message message, String consumerGroup) {
+        this.message = message;
+        this.consumerGroup = consumerGroup;
+        this.data = null;
+        this.metaData = null;
+        this.partition = -1;
+    }
+
+    Message getNatsMessage() {
+        return message;
+    }
 }
@@ -0,0 +1,63 @@
+package dev.memphis.sdk;
+
+import io.nats.client.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A reusable list of messages.  The wrappers created by add are kept
+ * when the batch is cleared and reused by later adds, so a consumer that
+ * recycles its batches stops allocating once the batch has reached its
+ * largest size.  Not thread-safe.
+ *
+ * Clearing the batch empties its wrappers, so whoever receives the
+ * messages of a recycled batch must be done with them by then, or keep
+ * MemphisMessage.copy() of those it holds on to.
+ */
+public final class MessageBatch {
+    private final List<MemphisMessage> messages = new ArrayList<>();
+    private final List<MemphisMessage> wrappers = new ArrayList<>();
+
+    /**
+     * Wraps a received message and appends it to the batch.
+     */
+    public void add(Message message, String consumerGroup) {
+        int index = messages.size();
+        MemphisMessage wrapper;
+        if(index < wrappers.size()) {
+            wrapper = wrappers.get(index);
+            wrapper.reset(message, consumerGroup);
+        } else {
+            wrapper = new MemphisMessage(message, consumerGroup);
+            wrappers.add(wrapper);
+        }
+        messages.add(wrapper);
+    }
+
+    /**
+     * @return the messages of the batch; the list and its messages are reused once the batch is cleared
+     */
+    public List<MemphisMessage> messages() {
+        return messages;
+    }
+
+    public int size() {
+        return messages.size();
+    }
+
+    public boolean isEmpty() {
+        return messages.isEmpty();
+    }
+
+    /**
+     * Empties the batch, releasing the received messages but keeping the
+     * wrappers for reuse.
+     */
+    public void clear() {
+        for(int i = 0; i < messages.size(); i++) {
+            wrappers.get(i).reset(null, null);
+        }
+        messages.clear();
+    }
+}
@@ -31,7 +31,7 @@ public class CreateConsumerRequest {
     public Integer maxMsgDeliveries;
 
     @JsonProperty("start_consume_from_sequence")
-    public Integer startConsumeFromSequence;
+    public Long startConsumeFromSequence;
 
     @JsonProperty("last_messages")
     public Integer lastMessages;
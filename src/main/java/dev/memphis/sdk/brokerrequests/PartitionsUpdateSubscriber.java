@@ -0,0 +1,110 @@
+package dev.memphis.sdk.brokerrequests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.memphis.sdk.Utils;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.Message;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Receives the partitions updates the broker sends when a station's
+ * partitions change, and hands the new partition list to the producers
+ * and consumers of that station.  One dispatcher serves the whole
+ * connection, with a subscription per station that has listeners.
+ * Listeners are called on the dispatcher's thread and must not block
+ * for long.
+ */
+public class PartitionsUpdateSubscriber {
+    private static final String PARTITIONS_UPDATES_SUBJECT_PREFIX = "$memphis_partitions_updates_";
+
+    private final Connection brokerConnection;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, List<Consumer<List<Integer>>>> listeners = new ConcurrentHashMap<>();
+    private Dispatcher dispatcher;
+
+    public PartitionsUpdateSubscriber(Connection brokerConnection) {
+        this.brokerConnection = brokerConnection;
+    }
+
+    private static String subject(String stationName) {
+        return PARTITIONS_UPDATES_SUBJECT_PREFIX + Utils.getInternalName(stationName);
+    }
+
+    /**
+     * Calls the listener with the station's partition list whenever the
+     * broker updates it.
+     */
+    public synchronized void subscribe(String stationName, Consumer<List<Integer>> listener) {
+        String subject = subject(stationName);
+        List<Consumer<List<Integer>>> stationListeners = listeners.computeIfAbsent(subject, key -> new CopyOnWriteArrayList<>());
+        stationListeners.add(listener);
+        if(stationListeners.size() == 1) {
+            if(dispatcher == null) {
+                dispatcher = brokerConnection.createDispatcher();
+            }
+            dispatcher.subscribe(subject, this::onUpdate);
+        }
+    }
+
+    public synchronized void unsubscribe(String stationName, Consumer<List<Integer>> listener) {
+        String subject = subject(stationName);
+        List<Consumer<List<Integer>>> stationListeners = listeners.get(subject);
+        if(stationListeners == null || !stationListeners.remove(listener) || !stationListeners.isEmpty()) {
+            return;
+        }
+        listeners.remove(subject);
+        try {
+            dispatcher.unsubscribe(subject);
+        } catch(IllegalStateException e) {
+            // already closed along with the connection
+        }
+    }
+
+    /**
+     * Stops receiving updates for every station.
+     */
+    public synchronized void close() {
+        listeners.clear();
+        if(dispatcher != null) {
+            try {
+                brokerConnection.closeDispatcher(dispatcher);
+            } catch(IllegalStateException e) {
+                // already closed along with the connection
+            }
+            dispatcher = null;
+        }
+    }
+
+    private void onUpdate(Message msg) {
+        List<Consumer<List<Integer>>> stationListeners = listeners.get(msg.getSubject());
+        if(stationListeners == null) {
+            return;
+        }
+
+        PartitionsUpdate update;
+        try {
+            update = mapper.readValue(msg.getData(), PartitionsUpdate.class);
+        } catch(IOException e) {
+            return;
+        }
+        if(update.partitionsList == null || update.partitionsList.isEmpty()) {
+            return;
+        }
+
+        List<Integer> partitions = List.copyOf(update.partitionsList);
+        for(Consumer<List<Integer>> listener : stationListeners) {
+            try {
+                listener.accept(partitions);
+            } catch(RuntimeException e) {
+                // one failing listener must not keep the update from the others
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package dev.memphis.sdk.compression;
+
+import java.io.IOException;
+
+/**
+ * Compresses message payloads.  Producers mark compressed messages with
+ * the $memphis_compression header carrying the codec's name; consumers
+ * look the codec up by that name to decompress.
+ *
+ * Codecs other than the built-in ones are found through
+ * java.util.ServiceLoader, so adding LZ4 or zstd support only requires
+ * putting a jar that provides this interface on the class path.
+ * Implementations must be thread-safe.
+ */
+public interface CompressionCodec {
+    /**
+     * Name of the header that marks compressed payloads.
+     */
+    String HEADER = "$memphis_compression";
+
+    /**
+     * @return the name stored in the $memphis_compression header
+     */
+    String name();
+
+    /**
+     * @param data array holding the payload
+     * @param offset index of the first payload byte
+     * @param length number of payload bytes
+     * @return the compressed payload
+     * @throws IOException if the payload could not be compressed
+     */
+    byte[] compress(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Decompresses at most CompressionCodecs.getMaxDecompressedSize() bytes.
+     * @param data a payload produced by compress
+     * @return the original payload
+     * @throws IOException if the payload is corrupt or decompresses to more than the limit
+     */
+    byte[] decompress(byte[] data) throws IOException;
+
+    /**
+     * Decompresses a payload, failing once its output exceeds maxSize
+     * bytes, so that a small corrupt or hostile payload cannot exhaust
+     * memory.  Codecs should stop decompressing as soon as the limit is
+     * passed; the default implementation only checks the result.
+     * @param data a payload produced by compress
+     * @param maxSize maximum number of bytes the payload may decompress to
+     * @return the original payload
+     * @throws IOException if the payload is corrupt or decompresses to more than maxSize bytes
+     */
+    default byte[] decompress(byte[] data, int maxSize) throws IOException {
+        byte[] decompressed = decompress(data);
+        if(decompressed.length > maxSize) {
+            throw new IOException("Decompressed " + name() + " payload exceeds " + maxSize + " bytes.");
+        }
+        return decompressed;
+    }
+}
@@ -0,0 +1,64 @@
+package dev.memphis.sdk.compression;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Looks up codecs by the name found in the $memphis_compression header.
+ */
+public class CompressionCodecs {
+    /**
+     * Default limit on the size of a decompressed payload, 64 MiB.
+     */
+    public static final int DEFAULT_MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
+
+    private static final Map<String, CompressionCodec> CODECS = new ConcurrentHashMap<>();
+    private static volatile int maxDecompressedSize = DEFAULT_MAX_DECOMPRESSED_SIZE;
+
+    static {
+        register(new DeflateCodec());
+        register(new GzipCodec());
+        for(CompressionCodec codec : ServiceLoader.load(CompressionCodec.class)) {
+            register(codec);
+        }
+    }
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Makes a codec available to consumers, replacing any codec
+     * registered under the same name.
+     */
+    public static void register(CompressionCodec codec) {
+        CODECS.put(codec.name(), codec);
+    }
+
+    /**
+     * @return the codec registered under name, or null if there is none
+     */
+    public static CompressionCodec forName(String name) {
+        return CODECS.get(name);
+    }
+
+    /**
+     * @return the maximum number of bytes a consumed payload may decompress to
+     */
+    public static int getMaxDecompressedSize() {
+        return maxDecompressedSize;
+    }
+
+    /**
+     * Sets the maximum number of bytes a consumed payload may decompress
+     * to.  Messages that decompress to more fail in getData() instead of
+     * exhausting memory.
+     * @param maxSize a positive number of bytes, smaller than the largest possible array
+     */
+    public static void setMaxDecompressedSize(int maxSize) {
+        if(maxSize <= 0 || maxSize >= ScratchBuffer.MAX_ARRAY_SIZE) {
+            throw new IllegalArgumentException("maxDecompressedSize must be between 1 and " + (ScratchBuffer.MAX_ARRAY_SIZE - 1) + ".");
+        }
+        maxDecompressedSize = maxSize;
+    }
+}
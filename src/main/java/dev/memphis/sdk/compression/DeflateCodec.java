@@ -0,0 +1,89 @@
+package dev.memphis.sdk.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * zlib/DEFLATE compression from the JDK.  Deflaters and inflaters are
+ * kept per thread and reset between messages.
+ */
+public class DeflateCodec implements CompressionCodec {
+    public static final String NAME = "deflate";
+
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    public DeflateCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level compression level from 0 to 9, or -1 for the default
+     */
+    public DeflateCodec(int level) {
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level));
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) throws IOException {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+
+        byte[] buffer = ScratchBuffer.get(length / 2 + 64);
+        int size = 0;
+        while(!deflater.finished()) {
+            if(size == buffer.length) {
+                if(size == ScratchBuffer.MAX_ARRAY_SIZE) {
+                    throw new IOException("Payload too large to compress with " + NAME + ".");
+                }
+                buffer = ScratchBuffer.grow(buffer, ScratchBuffer.MAX_ARRAY_SIZE);
+            }
+            size += deflater.deflate(buffer, size, buffer.length - size);
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data) throws IOException {
+        return decompress(data, CompressionCodecs.getMaxDecompressedSize());
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int maxSize) throws IOException {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(data);
+
+        int limit = ScratchBuffer.limit(maxSize);
+        byte[] buffer = ScratchBuffer.get(ScratchBuffer.estimate(data.length, 4, limit));
+        int size = 0;
+        try {
+            while(!inflater.finished()) {
+                if(size == buffer.length) {
+                    buffer = ScratchBuffer.grow(buffer, limit);
+                }
+                int n = inflater.inflate(buffer, size, buffer.length - size);
+                if(n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated " + NAME + " payload.");
+                }
+                size += n;
+                if(size >= limit) {
+                    throw new IOException("Decompressed " + NAME + " payload exceeds " + maxSize + " bytes.");
+                }
+            }
+        } catch(DataFormatException e) {
+            throw new IOException("Corrupt " + NAME + " payload: " + e.getMessage());
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+}
@@ -0,0 +1,55 @@
+package dev.memphis.sdk.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GZIP compression from the JDK, for consumers that need to read
+ * payloads with standard gzip tooling.
+ */
+public class GzipCodec implements CompressionCodec {
+    public static final String NAME = "gzip";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+        try(GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data, offset, length);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] data) throws IOException {
+        return decompress(data, CompressionCodecs.getMaxDecompressedSize());
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int maxSize) throws IOException {
+        int limit = ScratchBuffer.limit(maxSize);
+        byte[] buffer = ScratchBuffer.get(ScratchBuffer.estimate(data.length, 4, limit));
+        int size = 0;
+        try(GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            int n;
+            while((n = gzip.read(buffer, size, buffer.length - size)) >= 0) {
+                size += n;
+                if(size >= limit) {
+                    throw new IOException("Decompressed " + NAME + " payload exceeds " + maxSize + " bytes.");
+                }
+                if(size == buffer.length) {
+                    buffer = ScratchBuffer.grow(buffer, limit);
+                }
+            }
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+}
@@ -0,0 +1,66 @@
+package dev.memphis.sdk.compression;
+
+/**
+ * Per-thread working buffer used while compressing and decompressing,
+ * so that only the final, exactly sized result is allocated.  Buffers
+ * grown past MAX_RETAINED_SIZE for a large payload are not kept, so
+ * that every thread that ever handled one does not hold it for good.
+ */
+final class ScratchBuffer {
+    /**
+     * The largest array size the JVM reliably allocates.
+     */
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final int INITIAL_SIZE = 64 * 1024;
+    private static final int MAX_RETAINED_SIZE = 256 * 1024;
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[INITIAL_SIZE]);
+
+    private ScratchBuffer() {
+    }
+
+    /**
+     * @return this thread's buffer, at least minSize bytes long
+     */
+    static byte[] get(int minSize) {
+        byte[] buffer = BUFFER.get();
+        if(buffer.length < minSize) {
+            buffer = new byte[minSize];
+            keep(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Doubles the buffer, up to maxSize bytes, keeping its content.
+     * @param maxSize a size larger than the buffer's
+     */
+    static byte[] grow(byte[] buffer, int maxSize) {
+        byte[] larger = new byte[(int) Math.min(buffer.length * 2L, maxSize)];
+        System.arraycopy(buffer, 0, larger, 0, buffer.length);
+        keep(larger);
+        return larger;
+    }
+
+    /**
+     * @return the initial size of a buffer for a payload expected to be
+     * about ratio times the length of the input, but at most maxSize bytes
+     */
+    static int estimate(int length, int ratio, int maxSize) {
+        return (int) Math.min((long) length * ratio, maxSize);
+    }
+
+    /**
+     * @return the size of the buffer that tells whether a payload
+     * decompresses to more than maxSize bytes: one byte more
+     */
+    static int limit(int maxSize) {
+        return Math.min(maxSize, MAX_ARRAY_SIZE - 1) + 1;
+    }
+
+    private static void keep(byte[] buffer) {
+        if(buffer.length <= MAX_RETAINED_SIZE) {
+            BUFFER.set(buffer);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package dev.memphis.sdk.consumer;
+
+/**
+ * Chooses the size of the next pull of one partition from how the
+ * previous batches went.
+ *
+ * The time the callback takes per message is tracked as a moving
+ * average, and the batch is never made larger than what the callback can
+ * handle within the target latency.  Below that bound, a batch that came
+ * back full doubles the size, since more messages are waiting; a batch
+ * that came back less than half full shrinks the size towards what
+ * arrived, so pulls stop waiting for messages that are not coming.
+ * The size always stays within the configured bounds.
+ */
+class AdaptiveBatchSizer {
+    private static final double SMOOTHING = 0.25;
+    private static final double FULL_RATIO = 0.9;
+    private static final double SPARSE_RATIO = 0.5;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long targetNanos;
+    private double nanosPerMessage;
+    private volatile int size;
+
+    public AdaptiveBatchSizer(int minSize, int maxSize, long targetNanos, int initialSize) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetNanos = targetNanos;
+        this.size = clamp(initialSize);
+    }
+
+    /**
+     * @return the number of messages to pull next
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Records the outcome of a batch.  Called by one thread at a time.
+     * @param requested the number of messages pulled for
+     * @param received the number of messages that arrived
+     * @param handlerNanos time the callback took for the batch
+     */
+    public void record(int requested, int received, long handlerNanos) {
+        if(received > 0) {
+            double sample = (double) handlerNanos / received;
+            nanosPerMessage = nanosPerMessage == 0 ? sample : nanosPerMessage + SMOOTHING * (sample - nanosPerMessage);
+        }
+
+        double fill = requested > 0 ? (double) received / requested : 0;
+        long next = size;
+        if(fill >= FULL_RATIO) {
+            next = (long) size * 2;
+        } else if(fill < SPARSE_RATIO) {
+            next = Math.max(received, size / 2);
+        }
+
+        if(nanosPerMessage > 0) {
+            next = Math.min(next, (long) (targetNanos / nanosPerMessage));
+        }
+        size = clamp(next);
+    }
+
+    private int clamp(long value) {
+        return (int) Math.max(minSize, Math.min(maxSize, value));
+    }
+}
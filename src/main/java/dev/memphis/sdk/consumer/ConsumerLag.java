@@ -0,0 +1,38 @@
+package dev.memphis.sdk.consumer;
+
+import java.util.List;
+
+/**
+ * Backlog of a consumer group over all partitions of a station, as of the
+ * last keep-alive of each partition.  Partitions whose info has not been
+ * retrieved yet are left out.
+ */
+public class ConsumerLag {
+    public final String stationName;
+    public final String consumerGroup;
+    public final long pending;
+    public final long ackPending;
+    public final long redelivered;
+    public final List<PartitionLag> partitions;
+
+    ConsumerLag(String stationName, String consumerGroup, List<PartitionLag> partitions) {
+        long pending = 0, ackPending = 0, redelivered = 0;
+        for(PartitionLag lag : partitions) {
+            pending += lag.pending;
+            ackPending += lag.ackPending;
+            redelivered += lag.redelivered;
+        }
+        this.stationName = stationName;
+        this.consumerGroup = consumerGroup;
+        this.pending = pending;
+        this.ackPending = ackPending;
+        this.redelivered = redelivered;
+        this.partitions = List.copyOf(partitions);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s/%s: pending %d, ack pending %d, redelivered %d over %d partitions",
+                stationName, consumerGroup, pending, ackPending, redelivered, partitions.size());
+    }
+}
@@ -11,8 +11,17 @@ public class ConsumerOptions {
     public final String consumersGroup;
     public final int maxAckTimeMs;
     public final int maxMsgDeliveries;
-    public final int startConsumeFromSequence;
+    public final long startConsumeFromSequence;
     public final int lastMessages;
+    public final boolean adaptiveBatching;
+    public final int minBatchSize;
+    public final int maxBatchSize;
+    public final int targetBatchLatencyMs;
+    public final boolean reuseMessages;
+    public final LagListener lagListener;
+    public final int fetchMaxBytes;
+    public final long maxPrefetchedBytes;
+    public final int maxAckPending;
 
     private ConsumerOptions(Builder b) {
         consumerName = b.consumerName;
@@ -22,6 +31,15 @@ public class ConsumerOptions {
         maxMsgDeliveries = b.maxMsgDeliveries;
         startConsumeFromSequence = b.startConsumeFromSequence;
         lastMessages = b.lastMessages;
+        adaptiveBatching = b.adaptiveBatching;
+        minBatchSize = b.minBatchSize;
+        maxBatchSize = b.maxBatchSize;
+        targetBatchLatencyMs = b.targetBatchLatencyMs;
+        reuseMessages = b.reuseMessages;
+        lagListener = b.lagListener;
+        fetchMaxBytes = b.fetchMaxBytes;
+        maxPrefetchedBytes = b.maxPrefetchedBytes;
+        maxAckPending = b.maxAckPending;
     }
 
     /**
@@ -33,8 +51,17 @@ public class ConsumerOptions {
         private String consumersGroup = null;
         private int maxAckTimeMs = 5000;
         private int maxMsgDeliveries = 10;
-        private Integer startConsumeFromSequence = null;
+        private Long startConsumeFromSequence = null;
         private Integer lastMessages = null;
+        private boolean adaptiveBatching = false;
+        private int minBatchSize = 1;
+        private int maxBatchSize = 1000;
+        private int targetBatchLatencyMs = 1000;
+        private boolean reuseMessages = false;
+        private LagListener lagListener = null;
+        private int fetchMaxBytes = 0;
+        private long maxPrefetchedBytes = 0;
+        private int maxAckPending = 1000;
 
         public Builder consumerName(String consumerName) {
             this.consumerName = consumerName;
@@ -61,7 +88,7 @@ public class ConsumerOptions {
             return this;
         }
 
-        public Builder startConsumeFromSequence(int startConsumeFromSequence) {
+        public Builder startConsumeFromSequence(long startConsumeFromSequence) {
             this.startConsumeFromSequence = startConsumeFromSequence;
             return this;
         }
@@ -71,6 +98,99 @@ public class ConsumerOptions {
             return this;
         }
 
+        /**
+         * @param adaptiveBatching whether async consumers size each partition's pulls from the callback's processing
+         *                         time and how full recent pulls were, instead of using ClientOptions.batchSize;
+         *                         defaults to false
+         * @return the Builder object for chaining purpose
+         */
+        public Builder adaptiveBatching(boolean adaptiveBatching) {
+            this.adaptiveBatching = adaptiveBatching;
+            return this;
+        }
+
+        /**
+         * @param minBatchSize smallest pull of adaptive batching, defaults to 1
+         * @return the Builder object for chaining purpose
+         */
+        public Builder minBatchSize(int minBatchSize) {
+            this.minBatchSize = minBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize largest pull of adaptive batching, defaults to 1000
+         * @return the Builder object for chaining purpose
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param targetBatchLatencyMs longest the callback should take for one batch under adaptive batching,
+         *                             defaults to 1000
+         * @return the Builder object for chaining purpose
+         */
+        public Builder targetBatchLatencyMs(int targetBatchLatencyMs) {
+            this.targetBatchLatencyMs = targetBatchLatencyMs;
+            return this;
+        }
+
+        /**
+         * @param reuseMessages whether consumers reuse message lists and wrappers instead of allocating new ones
+         *                      for every batch.  An async consumer reuses a batch once the callback returns, and
+         *                      a sync consumer on the next fetch, so messages must be acknowledged and dropped
+         *                      by then; a callback that keeps messages longer, or hands them to other threads,
+         *                      must keep MemphisMessage.copy() of them instead.  Defaults to false
+         * @return the Builder object for chaining purpose
+         */
+        public Builder reuseMessages(boolean reuseMessages) {
+            this.reuseMessages = reuseMessages;
+            return this;
+        }
+
+        /**
+         * @param lagListener notified of the consumer group's lag each time a partition's keep-alive refreshes,
+         *                    defaults to null
+         * @return the Builder object for chaining purpose
+         */
+        public Builder lagListener(LagListener lagListener) {
+            this.lagListener = lagListener;
+            return this;
+        }
+
+        /**
+         * @param fetchMaxBytes maximum number of bytes each pull request may return, which must exceed the largest
+         *                      message of the station; defaults to 0, no limit
+         * @return the Builder object for chaining purpose
+         */
+        public Builder fetchMaxBytes(int fetchMaxBytes) {
+            this.fetchMaxBytes = fetchMaxBytes;
+            return this;
+        }
+
+        /**
+         * @param maxPrefetchedBytes maximum number of bytes the consumer's open pull requests may bring in before
+         *                           their messages are delivered, within ClientOptions.maxPrefetchedBytes;
+         *                           defaults to 0, no limit
+         * @return the Builder object for chaining purpose
+         */
+        public Builder maxPrefetchedBytes(long maxPrefetchedBytes) {
+            this.maxPrefetchedBytes = maxPrefetchedBytes;
+            return this;
+        }
+
+        /**
+         * @param maxAckPending maximum number of messages a push consumer group may have delivered but not yet
+         *                      acknowledged, defaults to 1000
+         * @return the Builder object for chaining purpose
+         */
+        public Builder maxAckPending(int maxAckPending) {
+            this.maxAckPending = maxAckPending;
+            return this;
+        }
+
         public ConsumerOptions build() throws MemphisException {
             if(stationName == null) {
                 throw new MemphisException("Station name must be set.");
@@ -80,6 +200,26 @@ public class ConsumerOptions {
                 throw new MemphisException("Consumer name must be set.");
             }
 
+            if(minBatchSize < 1 || maxBatchSize < minBatchSize) {
+                throw new MemphisException("Batch size bounds must satisfy 1 <= minBatchSize <= maxBatchSize.");
+            }
+
+            if(targetBatchLatencyMs < 1) {
+                throw new MemphisException("The target batch latency must be at least 1 ms.");
+            }
+
+            if(fetchMaxBytes < 0 || maxPrefetchedBytes < 0) {
+                throw new MemphisException("Byte limits cannot be negative.");
+            }
+
+            if(maxPrefetchedBytes > 0 && fetchMaxBytes > maxPrefetchedBytes) {
+                throw new MemphisException("fetchMaxBytes cannot exceed maxPrefetchedBytes.");
+            }
+
+            if(maxAckPending < 1) {
+                throw new MemphisException("maxAckPending must be at least 1.");
+            }
+
             if(consumersGroup == null) {
                 consumersGroup = consumerName;
             }
@@ -88,12 +228,12 @@ public class ConsumerOptions {
                 throw new MemphisException("Cannot set both StartConsumeFromSequence and LastMessages.");
             } else if(startConsumeFromSequence == null && lastMessages == null) {
                 // default to first message in station
-                startConsumeFromSequence = 1;
+                startConsumeFromSequence = 1L;
                 lastMessages = -1;
             } else if(startConsumeFromSequence != null) {
                 lastMessages = -1;
             } else {
-                startConsumeFromSequence = 1;
+                startConsumeFromSequence = 1L;
             }
 
             return new ConsumerOptions(this);
@@ -0,0 +1,17 @@
+package dev.memphis.sdk.consumer;
+
+/**
+ * Notified when the connection cannot refresh a consumer's keep-alive.
+ * Called on the connection's consumer executor, so implementations
+ * should return quickly.
+ */
+@FunctionalInterface
+public interface KeepAliveListener {
+    /**
+     * @param stationName internal name of the station partition, such as "orders$1"
+     * @param consumerGroup the consumer group whose keep-alive failed
+     * @param error the cause of the failure
+     * @param consecutiveFailures number of failures in a row, starting at 1
+     */
+    void onFailure(String stationName, String consumerGroup, Exception error, int consecutiveFailures);
+}
@@ -0,0 +1,181 @@
+package dev.memphis.sdk.consumer;
+
+import io.nats.client.JetStreamApiException;
+import io.nats.client.JetStreamManagement;
+import io.nats.client.api.ConsumerInfo;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the consumers of a connection alive by retrieving their consumer
+ * info periodically.  One task, run every second on the connection's
+ * consumer executor, serves every registered consumer partition; their
+ * due times are spread over the interval so the calls do not all happen
+ * at once.
+ *
+ * A failed call is retried after one second, doubling up to the
+ * interval, and reported to the listener.  The last ConsumerInfo
+ * retrieved for each consumer partition is cached and handed to the
+ * refresh listeners registered for it.
+ */
+public class KeepAliveService {
+    private static final long TICK_MILLIS = 1000;
+    private static final long MIN_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final JetStreamManagement jsManagement;
+    private final long intervalNanos;
+    private final KeepAliveListener listener;
+    private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> future;
+
+    private static class Registration {
+        private final String stationName;
+        private final String consumerGroup;
+        private final List<Consumer<ConsumerInfo>> refreshListeners = new CopyOnWriteArrayList<>();
+        private volatile ConsumerInfo info;
+        private long dueAt;
+        private int failures;
+        private int references;
+
+        private Registration(String stationName, String consumerGroup, long dueAt) {
+            this.stationName = stationName;
+            this.consumerGroup = consumerGroup;
+            this.dueAt = dueAt;
+        }
+    }
+
+    /**
+     * @param interval time between keep-alives of one consumer partition
+     * @param listener notified of failures, or null
+     */
+    public KeepAliveService(JetStreamManagement jsManagement, ScheduledExecutorService executor, Duration interval, KeepAliveListener listener) {
+        this.jsManagement = jsManagement;
+        this.intervalNanos = interval.toNanos();
+        this.listener = listener;
+        this.future = executor.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static String key(String stationName, String consumerGroup) {
+        return stationName + "/" + consumerGroup;
+    }
+
+    /**
+     * Starts keeping a consumer partition alive.  Registering the same
+     * partition and group again only counts another reference.
+     * @param stationName internal name of the station partition, such as "orders$1"
+     */
+    public void register(String stationName, String consumerGroup) {
+        register(stationName, consumerGroup, null);
+    }
+
+    /**
+     * Starts keeping a consumer partition alive and calls the listener,
+     * on the consumer executor, with every ConsumerInfo retrieved for it.
+     * @param refreshListener called after each refresh, or null
+     */
+    public void register(String stationName, String consumerGroup, Consumer<ConsumerInfo> refreshListener) {
+        long dueAt = System.nanoTime() + ThreadLocalRandom.current().nextLong(intervalNanos);
+        registrations.compute(key(stationName, consumerGroup), (key, registration) -> {
+            if(registration == null) {
+                registration = new Registration(stationName, consumerGroup, dueAt);
+            }
+            registration.references++;
+            if(refreshListener != null) {
+                registration.refreshListeners.add(refreshListener);
+            }
+            return registration;
+        });
+    }
+
+    /**
+     * Stops keeping a consumer partition alive once every registration of
+     * it has been removed.
+     */
+    public void unregister(String stationName, String consumerGroup) {
+        unregister(stationName, consumerGroup, null);
+    }
+
+    /**
+     * Removes a registration made with a refresh listener.
+     */
+    public void unregister(String stationName, String consumerGroup, Consumer<ConsumerInfo> refreshListener) {
+        registrations.computeIfPresent(key(stationName, consumerGroup), (key, registration) -> {
+            registration.refreshListeners.remove(refreshListener);
+            return --registration.references > 0 ? registration : null;
+        });
+    }
+
+    /**
+     * @return the consumer info last retrieved for the consumer partition, or null if none has been yet
+     */
+    public ConsumerInfo getConsumerInfo(String stationName, String consumerGroup) {
+        Registration registration = registrations.get(key(stationName, consumerGroup));
+        return registration != null ? registration.info : null;
+    }
+
+    private void tick() {
+        tick(System.nanoTime());
+    }
+
+    /**
+     * Refreshes every consumer partition due at the given time.
+     */
+    void tick(long now) {
+        for(Registration registration : registrations.values()) {
+            if(now - registration.dueAt < 0) {
+                continue;
+            }
+
+            try {
+                registration.info = jsManagement.getConsumerInfo(registration.stationName, registration.consumerGroup);
+                registration.failures = 0;
+                registration.dueAt = now + intervalNanos;
+                notifyRefresh(registration);
+            } catch(IOException | JetStreamApiException | IllegalStateException e) {
+                registration.failures++;
+                long retryNanos = MIN_RETRY_NANOS << Math.min(registration.failures - 1, 20);
+                registration.dueAt = now + Math.min(retryNanos, intervalNanos);
+                notifyFailure(registration, e);
+            }
+        }
+    }
+
+    private void notifyFailure(Registration registration, Exception error) {
+        if(listener == null) {
+            return;
+        }
+        try {
+            listener.onFailure(registration.stationName, registration.consumerGroup, error, registration.failures);
+        } catch(RuntimeException e) {
+            // a failing listener must not cancel the keep-alive task
+        }
+    }
+
+    private static void notifyRefresh(Registration registration) {
+        for(Consumer<ConsumerInfo> refreshListener : registration.refreshListeners) {
+            try {
+                refreshListener.accept(registration.info);
+            } catch(RuntimeException e) {
+                // a failing listener must not stop the keep-alives
+            }
+        }
+    }
+
+    /**
+     * Stops all keep-alives.
+     */
+    public void close() {
+        future.cancel(false);
+        registrations.clear();
+    }
+}
@@ -0,0 +1,242 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.MemphisException;
+import dev.memphis.sdk.MemphisMessage;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A consumer callback that processes messages on a pool of worker
+ * threads while keeping the order of messages with the same key.
+ *
+ * Each message is routed to a worker chosen by the hash of its key, so
+ * messages with equal keys are handled one after another in the order
+ * they were consumed.  Messages with a null key go to the workers in
+ * turn and keep no order.  Acks are sent in consumption order for each
+ * partition: a message is acknowledged once it and every message consumed
+ * before it from the same partition have been handled.  A message whose
+ * handler throws, be it an exception or an error, is negatively
+ * acknowledged in its turn instead, so the broker redelivers it, and its
+ * worker goes on with the next message.
+ *
+ * Once maxPending messages are held, hasCapacity() tells the consumer to
+ * send no more pull requests until workers catch up; accept itself never
+ * blocks, so the connection's consumer threads stay free for other
+ * consumers.  A batch already pulled is still accepted, so up to
+ * maxPending plus one batch may be held.  Messages are copied before
+ * they are handed to the workers, so the processor can be used with
+ * ConsumerOptions.reuseMessages.
+ *
+ * <pre>
+ * KeyOrderedProcessor processor = new KeyOrderedProcessor(8, 1000, KeyOrderedProcessor.byHeader("customer-id"), msg -&gt; ...);
+ * MemphisAsyncConsumer consumer = connection.createAsyncConsumer(opts, processor);
+ * </pre>
+ */
+public class KeyOrderedProcessor implements MemphisConsumerCallback, AutoCloseable {
+    private static final Entry STOP = new Entry(null, null);
+
+    private final Function<MemphisMessage, ?> keyExtractor;
+    private final Handler handler;
+    private final int maxPending;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Worker[] workers;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final Map<Integer, Sequencer> sequencers = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    /**
+     * Processes a single message.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void handle(MemphisMessage message) throws Exception;
+    }
+
+    private static class Entry {
+        private final MemphisMessage message;
+        private final Sequencer sequencer;
+        private boolean done;
+        private boolean failed;
+
+        private Entry(MemphisMessage message, Sequencer sequencer) {
+            this.message = message;
+            this.sequencer = sequencer;
+        }
+    }
+
+    /**
+     * Acknowledges the messages of one partition in consumption order.
+     */
+    private class Sequencer {
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+        private synchronized Entry add(MemphisMessage message) {
+            Entry entry = new Entry(message, this);
+            entries.add(entry);
+            return entry;
+        }
+
+        private synchronized void complete(Entry entry, boolean failed) {
+            entry.done = true;
+            entry.failed = failed;
+            while(!entries.isEmpty() && entries.peek().done) {
+                Entry head = entries.poll();
+                try {
+                    if(head.failed) {
+                        head.message.nak();
+                    } else {
+                        head.message.ack();
+                    }
+                } catch(RuntimeException e) {
+                    // the connection is closed; the broker redelivers the message
+                } finally {
+                    pending.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+        private final Thread thread;
+
+        private Worker(int index) {
+            thread = new Thread(this, "memphis-worker-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            while(true) {
+                Entry entry;
+                try {
+                    entry = queue.take();
+                } catch(InterruptedException e) {
+                    return;
+                }
+                if(entry == STOP) {
+                    return;
+                }
+
+                boolean failed = true;
+                try {
+                    handler.handle(entry.message);
+                    failed = false;
+                } catch(Throwable e) {
+                    // negatively acknowledged below; the worker must outlive
+                    // the handler, or its queue and permits would be lost
+                } finally {
+                    entry.sequencer.complete(entry, failed);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param numWorkers number of worker threads
+     * @param maxPending number of messages consumed but not yet acknowledged beyond which no more are pulled
+     * @param keyExtractor returns the key of a message; byte arrays are compared by content
+     * @param handler processes each message
+     * @throws MemphisException if numWorkers or maxPending is less than one
+     */
+    public KeyOrderedProcessor(int numWorkers, int maxPending, Function<MemphisMessage, ?> keyExtractor, Handler handler) throws MemphisException {
+        if(numWorkers < 1) {
+            throw new MemphisException("At least one worker is required.");
+        }
+        if(maxPending < 1) {
+            throw new MemphisException("At least one message must be allowed to be pending.");
+        }
+
+        this.keyExtractor = keyExtractor;
+        this.handler = handler;
+        this.maxPending = maxPending;
+        this.workers = new Worker[numWorkers];
+        for(int i = 0; i < numWorkers; i++) {
+            workers[i] = new Worker(i);
+        }
+    }
+
+    /**
+     * @return a key extractor that uses the value of a message header
+     */
+    public static Function<MemphisMessage, Object> byHeader(String name) {
+        return message -> message.getHeader(name);
+    }
+
+    /**
+     * Hands the messages to the workers without waiting.
+     */
+    @Override
+    public void accept(List<MemphisMessage> messages) {
+        for(MemphisMessage message : messages) {
+            if(closed) {
+                message.nak();
+                continue;
+            }
+
+            pending.incrementAndGet();
+            // the consumer may reuse the wrapper once accept returns
+            MemphisMessage held = message.copy();
+            Sequencer sequencer = sequencers.computeIfAbsent(held.getPartition(), partition -> new Sequencer());
+            workers[workerFor(keyExtractor.apply(held))].queue.add(sequencer.add(held));
+        }
+    }
+
+    /**
+     * @return false while maxPending messages or more are held
+     */
+    @Override
+    public boolean hasCapacity() {
+        return pending.get() < maxPending;
+    }
+
+    private int workerFor(Object key) {
+        if(key == null) {
+            return Math.floorMod(nextWorker.getAndIncrement(), workers.length);
+        }
+        int hash = key instanceof byte[] ? Arrays.hashCode((byte[]) key) : key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), workers.length);
+    }
+
+    /**
+     * @return the number of messages consumed but not yet acknowledged
+     */
+    public int getPendingCount() {
+        int count = 0;
+        for(Sequencer sequencer : sequencers.values()) {
+            synchronized(sequencer) {
+                count += sequencer.entries.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stops the workers once they have handled the messages already
+     * handed to them.  Messages passed to accept afterwards are
+     * negatively acknowledged.  If interrupted, returns without waiting
+     * for the workers, with the thread's interrupt status set.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for(Worker worker : workers) {
+            worker.queue.add(STOP);
+        }
+        try {
+            for(Worker worker : workers) {
+                worker.thread.join();
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package dev.memphis.sdk.consumer;
+
+/**
+ * Notified of a consumer's lag whenever the keep-alive of one of its
+ * partitions refreshes.  Called on the connection's consumer executor,
+ * so implementations should return quickly.
+ */
+@FunctionalInterface
+public interface LagListener {
+    void onLag(ConsumerLag lag);
+}
@@ -0,0 +1,55 @@
+package dev.memphis.sdk.consumer;
+
+import io.nats.client.api.ConsumerInfo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Registers a consumer's partitions with the keep-alive service and
+ * reports their lag from the ConsumerInfo it caches, so no extra calls
+ * to the broker are made.
+ */
+class LagTracker {
+    private final KeepAliveService keepAliveService;
+    private final String stationName;
+    private final String consumerGroup;
+    private final Map<Integer, String> stationNames;
+    private final Consumer<ConsumerInfo> refreshListener;
+
+    /**
+     * @param stationNames internal station partition names keyed by partition number
+     * @param listener notified on every refresh, or null
+     */
+    public LagTracker(KeepAliveService keepAliveService, String stationName, String consumerGroup,
+                      Map<Integer, String> stationNames, LagListener listener) {
+        this.keepAliveService = keepAliveService;
+        this.stationName = stationName;
+        this.consumerGroup = consumerGroup;
+        this.stationNames = stationNames;
+        this.refreshListener = listener != null ? info -> listener.onLag(lag()) : null;
+    }
+
+    public void register(int partition) {
+        keepAliveService.register(stationNames.get(partition), consumerGroup, refreshListener);
+    }
+
+    public void unregister(int partition) {
+        keepAliveService.unregister(stationNames.get(partition), consumerGroup, refreshListener);
+    }
+
+    public ConsumerLag lag() {
+        List<PartitionLag> partitions = new ArrayList<>();
+        stationNames.forEach((partition, name) -> {
+            ConsumerInfo info = keepAliveService.getConsumerInfo(name, consumerGroup);
+            if(info != null) {
+                partitions.add(new PartitionLag(partition, info));
+            }
+        });
+        partitions.sort(Comparator.comparingInt(lag -> lag.partition));
+        return new ConsumerLag(stationName, consumerGroup, partitions);
+    }
+}
@@ -0,0 +1,104 @@
+package dev.memphis.sdk.consumer;
+
+/**
+ * Bounds the bytes that pull requests may bring in before their
+ * messages are delivered.  A pull reserves its max_bytes from the budget
+ * before it is sent and releases them once its messages have been
+ * handed over, so pulls are held back while the budget is exhausted.
+ *
+ * A budget may have a parent, such as a consumer's budget within the
+ * connection's; a reservation then has to fit in both.
+ *
+ * The budget is an estimate rather than a hard cap: the pull that
+ * follows one refused its first message for its max_bytes is sent
+ * without max_bytes, so that a message larger than any pull's share
+ * still gets through.
+ */
+public class MemoryBudget {
+    private static final int PULL_SHARES = 8;
+
+    private final long limit;
+    private final MemoryBudget parent;
+    private long reserved;
+
+    /**
+     * @param limit maximum number of bytes reserved at once, or 0 for no limit
+     * @param parent budget that reservations must also fit in, or null
+     */
+    public MemoryBudget(long limit, MemoryBudget parent) {
+        this.limit = limit;
+        this.parent = parent;
+    }
+
+    /**
+     * @return the maximum number of bytes reserved at once, or 0 for no limit
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the number of bytes currently reserved by pull requests
+     */
+    public synchronized long getReserved() {
+        return reserved;
+    }
+
+    private boolean isLimited() {
+        return limit > 0 || (parent != null && parent.isLimited());
+    }
+
+    /**
+     * The largest pull that may reserve from this budget: pulls without a
+     * size of their own take an eighth of the smallest limit, so that a
+     * few partitions cannot hold all of it.
+     */
+    private long pullShare(boolean wanted) {
+        long share = limit > 0 ? (wanted ? limit : Math.max(limit / PULL_SHARES, 1)) : Long.MAX_VALUE;
+        return parent != null ? Math.min(share, parent.pullShare(wanted)) : share;
+    }
+
+    /**
+     * Reserves the bytes for a pull.
+     * @param wanted max_bytes the caller wants for the pull, or 0 for no preference
+     * @return the max_bytes to send with the pull, 0 for none, or -1 if the budget has no room for it now
+     */
+    int reserve(int wanted) {
+        if(!isLimited()) {
+            return wanted;
+        }
+        int bytes = (int) Math.min(pullShare(wanted > 0), wanted > 0 ? wanted : Integer.MAX_VALUE);
+        return tryReserve(bytes) ? bytes : -1;
+    }
+
+    private boolean tryReserve(long bytes) {
+        synchronized(this) {
+            if(limit > 0 && reserved + bytes > limit) {
+                return false;
+            }
+            reserved += bytes;
+        }
+        if(parent != null && !parent.tryReserve(bytes)) {
+            synchronized(this) {
+                reserved -= bytes;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases bytes returned by reserve.
+     */
+    void release(int bytes) {
+        if(bytes <= 0 || !isLimited()) {
+            return;
+        }
+        synchronized(this) {
+            reserved -= bytes;
+        }
+        if(parent != null) {
+            parent.release(bytes);
+        }
+    }
+}
@@ -1,133 +1,579 @@
 package dev.memphis.sdk.consumer;
 
+import dev.memphis.sdk.Acknowledger;
 import dev.memphis.sdk.ClientOptions;
 import dev.memphis.sdk.MemphisException;
-import dev.memphis.sdk.MemphisMessage;
+import dev.memphis.sdk.MessageBatch;
 import dev.memphis.sdk.Utils;
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
 import io.nats.client.*;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This consumer will call the provided function when messages
- * are received.  This class implements the Runnable interface
- * so that it can be run in a separate thread if desired.
+ * are received.  Fetching is driven by tasks scheduled on an executor
+ * shared by all consumers of the connection, so a consumer does not
+ * hold any thread while it waits for messages.
+ *
+ * When the broker changes the station's partitions, fetchers are added
+ * for new partitions, and fetchers of removed partitions hand their last
+ * pull to the callback before unsubscribing.
  */
 public class MemphisAsyncConsumer {
     private static final String STATION_SUFFIX = ".final";
 
-    private final Map<Integer, Thread> subscriptionThreads = new HashMap<>();
-    private final Map<Integer, ConsumerRunnable> subscriptions = new HashMap<>();
-    private final Map<Integer, Thread> keepAliveThreads = new HashMap<>();
-    private final Map<Integer, ConsumerKeepAlive> keepAlives = new HashMap<>();
-    private final List<Integer> partitions;
+    private final Map<Integer, PartitionFetcher> fetchers = new ConcurrentSkipListMap<>();
+    private final Map<PartitionFetcher, Integer> retiringFetchers = new IdentityHashMap<>();
+    private final Map<Integer, String> stationNames = new ConcurrentSkipListMap<>();
+    private final LagTracker lagTracker;
+    private final String consumerGroup;
+    private final Acknowledger acknowledger;
+    private final JetStream context;
+    private final JetStreamManagement management;
+    private final PullSubscribeOptions pullOptions;
+    private final ClientOptions clientOptions;
+    private final ConsumerOptions consumerOptions;
+    private final MemphisConsumerCallback callback;
+    private final ScheduledExecutorService scheduler;
+    private final Executor callbackExecutor;
+    private final MemoryBudget budget;
+    private final int fetchMaxBytes;
+    private final PartitionsUpdateSubscriber partitionsUpdates;
+    private final PartitionsUpdater partitionsListener;
+    private final List<PartitionReplay> replays = new ArrayList<>();
+    private final List<CompletableFuture<Void>> replaysDone = new ArrayList<>();
+    private boolean started = false;
+    private boolean fetching = false;
+    private boolean stopped = false;
+
+    /**
+     * Pulls messages for one partition.  Each run issues a pull request if
+     * none is outstanding, moves whatever has arrived into the current
+     * batch, and reschedules itself: soon, with a growing delay, while the
+     * pull is still open, or after pullInterval once the batch has been
+     * handed to the callback.  Runs of one fetcher never overlap.
+     *
+     * With prefetching, the next pull is issued before a non-empty batch
+     * is handed to the callback, so the following batch arrives while the
+     * callback runs, and the fetcher only waits pullInterval after a pull
+     * that came back empty.
+     *
+     * Each pull reserves its bytes from the memory budget, and releases
+     * them once the callback has returned; no pull is issued while the
+     * budget is exhausted, nor while the callback has no capacity.  A pull that its max_bytes ended before its
+     * first message is followed by a pull of a single message without
+     * max_bytes, so that a message larger than the pull's share of the
+     * budget is still delivered.
+     *
+     * A retiring fetcher issues no new pull: it stops once the pull in
+     * progress, if any, has been handed to the callback.
+     */
+    private static class PartitionFetcher implements Runnable {
+        private static final long MIN_POLL_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+        private static final long MAX_POLL_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+        private static final Duration DRAIN_WAIT = Duration.ofMillis(1);
 
-    private static class ConsumerRunnable implements Runnable {
         private final JetStreamSubscription sub;
-        private volatile boolean canceled = false;
+        private final ScheduledExecutorService scheduler;
+        private final Executor callbackExecutor;
         private final Duration maxWaitTime;
+        private final AdaptiveBatchSizer batchSizer;
         private final int batchSize;
-        private final Duration pullInterval;
+        private final long pullIntervalNanos;
+        private final boolean prefetch;
         private final String consumerGroup;
         private final MemphisConsumerCallback callback;
+        private final MemoryBudget budget;
+        private final int fetchMaxBytes;
+        private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+
+        private final Queue<MessageBatch> freeBatches;
 
-        public ConsumerRunnable(JetStreamSubscription sub, ClientOptions clientOptions, ConsumerOptions consumerOptions, MemphisConsumerCallback callbackFunction) {
+        private MessageBatch batch = new MessageBatch();
+        private boolean pulling = false;
+        private int outstanding;
+        private int requested;
+        private int reservedBytes;
+        private long pullDeadline;
+        private long pollDelayNanos = MIN_POLL_DELAY_NANOS;
+        private boolean starved = false;
+
+        private boolean canceled = false;
+        private volatile boolean retiring = false;
+        private boolean running = false;
+        private ScheduledFuture<?> next;
+
+        public PartitionFetcher(JetStreamSubscription sub, ClientOptions clientOptions, ConsumerOptions consumerOptions, MemphisConsumerCallback callbackFunction,
+                                ScheduledExecutorService scheduler, Executor callbackExecutor, MemoryBudget budget) {
             this.sub = sub;
+            this.scheduler = scheduler;
+            this.callbackExecutor = callbackExecutor;
             this.maxWaitTime = clientOptions.maxWaitTime;
             this.batchSize = clientOptions.batchSize;
-            this.pullInterval = clientOptions.pullInterval;
+            this.batchSizer = consumerOptions.adaptiveBatching
+                    ? new AdaptiveBatchSizer(consumerOptions.minBatchSize, consumerOptions.maxBatchSize,
+                            TimeUnit.MILLISECONDS.toNanos(consumerOptions.targetBatchLatencyMs), clientOptions.batchSize)
+                    : null;
+            this.pullIntervalNanos = clientOptions.pullInterval.toNanos();
+            this.prefetch = clientOptions.prefetch;
+            this.freeBatches = consumerOptions.reuseMessages ? new ConcurrentLinkedQueue<>() : null;
             this.consumerGroup = consumerOptions.consumersGroup;
             this.callback = callbackFunction;
+            this.budget = budget;
+            this.fetchMaxBytes = consumerOptions.fetchMaxBytes;
         }
 
-        /**
-         * Run the callback processing loop.
-         */
+        @Override
         public void run() {
-            while(!canceled) {
-                List<MemphisMessage> memphisMessages = new ArrayList<>();
-                for(Message msg : sub.fetch(batchSize, maxWaitTime)) {
-                    memphisMessages.add(new MemphisMessage(msg, consumerGroup));
+            synchronized(this) {
+                if(canceled || retiring && !pulling) {
+                    stopped.complete(null);
+                    return;
                 }
-                callback.accept(memphisMessages);
+                running = true;
+            }
+
+            try {
+                if(!pulling && !startPull()) {
+                    // the memory budget is exhausted, or the callback is busy
+                    schedule(pollDelayNanos);
+                    pollDelayNanos = Math.min(pollDelayNanos * 2, MAX_POLL_DELAY_NANOS);
+                    return;
+                }
+
+                while(outstanding > 0 && sub.getPendingMessageCount() > 0) {
+                    Message msg = sub.nextMessage(DRAIN_WAIT);
+                    if(msg == null) {
+                        break;
+                    }
+                    batch.add(msg, consumerGroup);
+                    outstanding--;
+                    pollDelayNanos = MIN_POLL_DELAY_NANOS;
+                }
+            } catch(IllegalStateException e) {
+                // the subscription or connection is closed; try again later
+                pulling = false;
+                budget.release(reservedBytes);
+                reservedBytes = 0;
+                schedule(pullIntervalNanos);
+                return;
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                synchronized(this) {
+                    canceled = true;
+                }
+                schedule(0);
+                return;
+            }
+
+            if(outstanding > 0 && System.nanoTime() < pullDeadline && !endedOnBytes()) {
+                schedule(pollDelayNanos);
+                pollDelayNanos = Math.min(pollDelayNanos * 2, MAX_POLL_DELAY_NANOS);
+                return;
+            }
+
+            pulling = false;
+            starved = outstanding == requested && reservedBytes > 0 && System.nanoTime() < pullDeadline;
+            MessageBatch messages = batch;
+            int messagesRequested = requested;
+            int messagesBytes = reservedBytes;
+            reservedBytes = 0;
+            batch = nextBatch();
+            if(prefetch && !retiring && !messages.isEmpty()) {
                 try {
-                    Thread.sleep(pullInterval.toMillis());
-                } catch(InterruptedException e) {
-                    break;
+                    startPull();
+                } catch(IllegalStateException e) {
+                    // retried by the next run
+                }
+            }
+            if(callbackExecutor == null) {
+                deliver(messages, messagesRequested, messagesBytes);
+            } else {
+                callbackExecutor.execute(() -> deliver(messages, messagesRequested, messagesBytes));
+            }
+        }
+
+        private MessageBatch nextBatch() {
+            MessageBatch free = freeBatches != null ? freeBatches.poll() : null;
+            return free != null ? free : new MessageBatch();
+        }
+
+        public int batchSize() {
+            return batchSizer != null ? batchSizer.size() : batchSize;
+        }
+
+        /**
+         * @return false if the callback has no capacity or the memory budget has no room for another pull
+         */
+        private boolean startPull() {
+            if(!callback.hasCapacity()) {
+                return false;
+            }
+            int bytes = budget.reserve(fetchMaxBytes);
+            if(bytes < 0) {
+                return false;
+            }
+            boolean single = starved && bytes > 0;
+            requested = single ? 1 : batchSize();
+            try {
+                if(bytes > 0 && !single) {
+                    sub.pull(PullRequestOptions.builder(requested).maxBytes(bytes).expiresIn(maxWaitTime).build());
+                } else {
+                    sub.pullExpiresIn(requested, maxWaitTime);
                 }
+            } catch(IllegalStateException e) {
+                budget.release(bytes);
+                throw e;
             }
+            reservedBytes = bytes;
+            pulling = true;
+            outstanding = requested;
+            pullDeadline = System.nanoTime() + maxWaitTime.toNanos();
+            pollDelayNanos = MIN_POLL_DELAY_NANOS;
+            return true;
         }
 
         /**
-         * Call the consumer processing.
+         * A pull limited in bytes may end before delivering all its
+         * messages, which the client's pull status tells.
          */
-        public void cancel() {
-            this.canceled = true;
+        private boolean endedOnBytes() {
+            return reservedBytes > 0 && sub.getPullStatus().getPendingMessages() <= 0;
+        }
+
+        private void deliver(MessageBatch messages, int messagesRequested, int messagesBytes) {
+            long start = System.nanoTime();
+            try {
+                callback.accept(messages.messages());
+            } finally {
+                budget.release(messagesBytes);
+                int received = messages.size();
+                if(batchSizer != null) {
+                    batchSizer.record(messagesRequested, received, System.nanoTime() - start);
+                }
+                if(freeBatches != null) {
+                    messages.clear();
+                    freeBatches.offer(messages);
+                }
+                schedule(prefetch && received > 0 ? 0 : pullIntervalNanos);
+            }
+        }
+
+        private synchronized void schedule(long delayNanos) {
+            running = false;
+            if(canceled) {
+                stopped.complete(null);
+                return;
+            }
+            try {
+                next = scheduler.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+            } catch(RejectedExecutionException e) {
+                // the executor has been shut down along with the connection
+                canceled = true;
+                stopped.complete(null);
+            }
+        }
+
+        public void start() {
+            schedule(0);
+        }
+
+        /**
+         * Stops fetching once the current run or callback returns.
+         * @return a future completed once the fetcher has stopped
+         */
+        public synchronized CompletableFuture<Void> stop() {
+            canceled = true;
+            if(!running) {
+                if(next != null) {
+                    next.cancel(false);
+                }
+                stopped.complete(null);
+            }
+            return stopped;
+        }
+
+        /**
+         * Stops fetching once the pull in progress has been handed to the
+         * callback.
+         * @return a future completed once the fetcher has stopped
+         */
+        public synchronized CompletableFuture<Void> retire() {
+            retiring = true;
+            if(!running && !pulling) {
+                if(next != null) {
+                    next.cancel(false);
+                }
+                stopped.complete(null);
+            }
+            return stopped;
         }
 
         public void unsubscribe() {
             this.sub.unsubscribe();
+            budget.release(reservedBytes);
+            reservedBytes = 0;
         }
     }
 
-    public MemphisAsyncConsumer(Connection brokerConnection, ClientOptions clientOptions, ConsumerOptions consumerOptions, List<Integer> partitions, MemphisConsumerCallback callbackFunction) throws MemphisException {
-        this.partitions = partitions;
+    public MemphisAsyncConsumer(Connection brokerConnection, ClientOptions clientOptions, ConsumerOptions consumerOptions, List<Integer> partitions, MemphisConsumerCallback callbackFunction,
+                                ScheduledExecutorService executor, Executor callbackExecutor, KeepAliveService keepAliveService,
+                                MemoryBudget connectionBudget, PartitionsUpdateSubscriber partitionsUpdates) throws MemphisException {
+        this.acknowledger = new Acknowledger(brokerConnection, clientOptions.timeout);
+        this.lagTracker = new LagTracker(keepAliveService, consumerOptions.stationName, consumerOptions.consumersGroup,
+                stationNames, consumerOptions.lagListener);
+        this.consumerGroup = consumerOptions.consumersGroup;
+        this.clientOptions = clientOptions;
+        this.consumerOptions = consumerOptions;
+        this.callback = callbackFunction;
+        this.scheduler = executor;
+        this.callbackExecutor = callbackExecutor;
+        this.budget = new MemoryBudget(consumerOptions.maxPrefetchedBytes, connectionBudget);
+        this.fetchMaxBytes = consumerOptions.fetchMaxBytes;
 
-        PullSubscribeOptions pullOptions = PullSubscribeOptions.builder()
+        this.pullOptions = PullSubscribeOptions.builder()
                 .durable(consumerOptions.consumersGroup)
                 .build();
 
         try {
-            var context = brokerConnection.jetStream();
-
-            for(Integer partName : partitions) {
-                String internalName = Utils.getInternalName(consumerOptions.stationName);
-                String completeStationName = internalName + "$" + partName;
-                JetStreamSubscription sub = context.subscribe(completeStationName + STATION_SUFFIX, pullOptions);
-                ConsumerRunnable runnable = new ConsumerRunnable(sub, clientOptions, consumerOptions, callbackFunction);
-                Thread consumerThread = new Thread(runnable);
-
-                subscriptionThreads.put(partName, consumerThread);
-                subscriptions.put(partName, runnable);
+            this.context = brokerConnection.jetStream();
+            this.management = brokerConnection.jetStreamManagement();
+        } catch (IOException e) {
+            throw new MemphisException(e.getMessage());
+        }
+        for(Integer partName : partitions) {
+            addPartition(partName);
+        }
+        this.partitionsUpdates = partitionsUpdates;
+        this.partitionsListener = new PartitionsUpdater(this::updatePartitions, executor);
+        partitionsUpdates.subscribe(consumerOptions.stationName, partitionsListener);
+    }
 
-                ConsumerKeepAlive keepAlive = new ConsumerKeepAlive(brokerConnection.jetStreamManagement(), completeStationName, consumerOptions.consumersGroup, Duration.ofSeconds(10));
-                Thread keepAliveThread = new Thread(keepAlive);
-                keepAliveThread.start();
-                keepAliveThreads.put(partName, keepAliveThread);
-                keepAlives.put(partName, keepAlive);
-            }
+    private PartitionFetcher addPartition(int partName) throws MemphisException {
+        String completeStationName = Utils.getInternalName(consumerOptions.stationName) + "$" + partName;
+        JetStreamSubscription sub;
+        try {
+            sub = context.subscribe(completeStationName + STATION_SUFFIX, pullOptions);
         } catch (IOException | JetStreamApiException e) {
             throw new MemphisException(e.getMessage());
         }
+        PartitionFetcher fetcher = new PartitionFetcher(sub, clientOptions, consumerOptions, callback, scheduler, callbackExecutor, budget);
+        fetchers.put(partName, fetcher);
+        stationNames.put(partName, completeStationName);
+        lagTracker.register(partName);
+        return fetcher;
+    }
+
+    /**
+     * Switches the consumer to a new partition list, as sent by the broker
+     * when the station's partitions change.  New partitions are consumed
+     * right away if the consumer has been started; removed partitions
+     * deliver the messages already pulled before they are unsubscribed.
+     * Updates from the broker that fail are retried with a growing delay.
+     * @param partitions the station's partitions
+     * @throws MemphisException if a new partition cannot be subscribed to
+     */
+    public synchronized void updatePartitions(List<Integer> partitions) throws MemphisException {
+        if(stopped) {
+            return;
+        }
+        for(Integer partName : List.copyOf(fetchers.keySet())) {
+            if(!partitions.contains(partName)) {
+                PartitionFetcher fetcher = fetchers.remove(partName);
+                retiringFetchers.put(fetcher, partName);
+                fetcher.retire().thenRun(() -> retired(partName, fetcher));
+            }
+        }
+        for(Integer partName : partitions) {
+            if(!fetchers.containsKey(partName)) {
+                PartitionFetcher fetcher = addPartition(partName);
+                if(fetching) {
+                    fetcher.start();
+                }
+            }
+        }
+    }
+
+    private synchronized void retired(int partName, PartitionFetcher fetcher) {
+        if(retiringFetchers.remove(fetcher) == null) {
+            // already released by stop()
+            return;
+        }
+        fetcher.unsubscribe();
+        lagTracker.unregister(partName);
+        if(!fetchers.containsKey(partName)) {
+            stationNames.remove(partName);
+        }
+    }
+
+    /**
+     * @return the number of messages each partition currently pulls at once, keyed by partition number
+     */
+    public Map<Integer, Integer> getBatchSizes() {
+        Map<Integer, Integer> sizes = new TreeMap<>();
+        fetchers.forEach((partition, fetcher) -> sizes.put(partition, fetcher.batchSize()));
+        return sizes;
+    }
+
+    /**
+     * Returns the lag of the consumer group as of the last keep-alive of
+     * each partition, without calling the broker.
+     */
+    public ConsumerLag getLag() {
+        return lagTracker.lag();
+    }
+
+    /**
+     * @return an Acknowledger for acknowledging messages of this consumer in bulk
+     */
+    public Acknowledger getAcknowledger() {
+        return acknowledger;
     }
 
     /**
      * Starts consumption of messages.
      */
-    public void start() {
-        for(Thread thread : subscriptionThreads.values()) {
-            thread.start();
+    public synchronized void start() {
+        if(started) {
+            return;
         }
+        started = true;
+        startFetchers();
+    }
+
+    private synchronized void startFetchers() {
+        if(stopped) {
+            return;
+        }
+        fetching = true;
+        for(PartitionFetcher fetcher : fetchers.values()) {
+            fetcher.start();
+        }
+    }
+
+    /**
+     * Replays every partition from a position, then starts consuming with
+     * the consumer group as start() does.
+     * @see #replay(Map, ReplayPosition)
+     */
+    public CompletableFuture<Void> replay(ReplayPosition from, ReplayPosition until) throws MemphisException {
+        Map<Integer, ReplayPosition> positions = new HashMap<>();
+        for(Integer partition : fetchers.keySet()) {
+            positions.put(partition, from);
+        }
+        return replay(positions, until);
+    }
+
+    /**
+     * Delivers a range of messages of each given partition to the callback,
+     * reading all partitions in parallel, then starts consuming with the
+     * consumer group as start() does.  Must be called instead of start().
+     *
+     * Replayed messages are read through temporary consumers outside of
+     * the consumer group: they need no acks, and the group's position is
+     * unchanged, so the group then continues where it left off.
+     * @param from start of the range for each partition to replay, keyed by partition number
+     * @param until inclusive end of the range, or null to replay up to the last message stored when the replay starts
+     * @return a future completed once every partition has been replayed
+     * @throws MemphisException if the consumer was already started or a temporary consumer cannot be created
+     */
+    public synchronized CompletableFuture<Void> replay(Map<Integer, ReplayPosition> from, ReplayPosition until) throws MemphisException {
+        if(started) {
+            throw new MemphisException("The consumer has already been started.");
+        }
+        if(until != null && !until.isValid()) {
+            throw new MemphisException("Invalid end of replay: " + until + ".");
+        }
+        for(Map.Entry<Integer, ReplayPosition> entry : from.entrySet()) {
+            if(!stationNames.containsKey(entry.getKey())) {
+                throw new MemphisException("The station has no partition " + entry.getKey() + ".");
+            }
+            if(!entry.getValue().isValid()) {
+                throw new MemphisException("Invalid start of replay: " + entry.getValue() + ".");
+            }
+        }
+
+        try {
+            for(Map.Entry<Integer, ReplayPosition> entry : from.entrySet()) {
+                replays.add(new PartitionReplay(context, management, stationNames.get(entry.getKey()) + STATION_SUFFIX, entry.getValue(), until,
+                        clientOptions.batchSize, clientOptions.maxWaitTime, consumerGroup, callback, scheduler, callbackExecutor, budget, fetchMaxBytes));
+            }
+        } catch(MemphisException e) {
+            for(PartitionReplay replay : replays) {
+                replay.close();
+            }
+            replays.clear();
+            throw e;
+        }
+
+        started = true;
+        for(PartitionReplay replay : replays) {
+            replaysDone.add(replay.start());
+        }
+        return CompletableFuture.allOf(replaysDone.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((result, error) -> startFetchers());
     }
 
     /**
-     * Disconnect the consumer and release resources.
+     * Disconnect the consumer and release resources.  Waits for callbacks
+     * that are running to return.
      */
     public void stop() throws InterruptedException{
-        for(Integer partName : partitions) {
-            subscriptions.get(partName).cancel();
-            keepAlives.get(partName).cancel();
+        partitionsUpdates.unsubscribe(consumerOptions.stationName, partitionsListener);
+        partitionsListener.cancel();
+        List<CompletableFuture<Void>> replaying;
+        Map<Integer, PartitionFetcher> stopping;
+        List<PartitionFetcher> retiring;
+        synchronized(this) {
+            stopped = true;
+            replays.forEach(PartitionReplay::cancel);
+            replaying = new ArrayList<>(replaysDone);
+            stopping = new TreeMap<>(fetchers);
+            retiring = new ArrayList<>(retiringFetchers.keySet());
+            retiringFetchers.forEach((fetcher, partName) -> lagTracker.unregister(partName));
+            retiringFetchers.clear();
+        }
+        for(CompletableFuture<Void> replayDone : replaying) {
+            try {
+                replayDone.get();
+            } catch(ExecutionException e) {
+                // reported through the future returned by replay
+            }
         }
 
-        for(Integer partName : partitions) {
-            subscriptionThreads.get(partName).join();
-            keepAliveThreads.get(partName).join();
-            subscriptions.get(partName).unsubscribe();
+        stopping.forEach((partName, fetcher) -> lagTracker.unregister(partName));
+        List<PartitionFetcher> all = new ArrayList<>(stopping.values());
+        all.addAll(retiring);
+        List<CompletableFuture<Void>> stopped = new ArrayList<>();
+        for(PartitionFetcher fetcher : all) {
+            stopped.add(fetcher.stop());
+        }
+
+        for(int i = 0; i < all.size(); i++) {
+            try {
+                stopped.get(i).get();
+            } catch(ExecutionException e) {
+                // stopped is never completed exceptionally
+            }
+            all.get(i).unsubscribe();
         }
     }
 }
@@ -7,4 +7,16 @@ import java.util.List;
 @FunctionalInterface
 public interface MemphisConsumerCallback {
     void accept(List<MemphisMessage> messages);
+
+    /**
+     * Tells an async consumer whether to pull more messages for the
+     * callback.  While it returns false, the consumer sends no pull
+     * request and asks again a little later, so a callback that queues
+     * messages can bound its queue without blocking accept.  Push
+     * consumers do not ask; their broker-side maxAckPending bounds them.
+     * @return true by default
+     */
+    default boolean hasCapacity() {
+        return true;
+    }
 }
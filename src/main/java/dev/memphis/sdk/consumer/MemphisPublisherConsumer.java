@@ -0,0 +1,330 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.Acknowledger;
+import dev.memphis.sdk.ClientOptions;
+import dev.memphis.sdk.MemphisException;
+import dev.memphis.sdk.MemphisMessage;
+import dev.memphis.sdk.MessageBatch;
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
+import io.nats.client.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A consumer that publishes messages to a single Flow.Subscriber and
+ * pulls from the broker only as much as the subscriber has requested.
+ *
+ * Demand is spread over the partitions as pull requests of at most
+ * batchSize messages each, renewed as they complete, so the messages
+ * held by the consumer stay bounded by the outstanding demand plus one
+ * pull per partition.  No pulls are sent while there is no demand.
+ *
+ * Messages are drained when the subscriber requests more and when an
+ * open pull delivers or expires.  The client's pull subscriptions do not
+ * report arrivals, so each open pull is awaited by a blocking wait on a
+ * thread of the consumer's own, and the consumer executor is not polled.
+ *
+ * Signals to the subscriber are delivered on the connection's consumer
+ * executor, and subscribers should not block in onNext.  Cancelling the
+ * subscription releases the consumer.
+ *
+ * Changes to the station's partitions sent by the broker take effect at
+ * the next drain, which they trigger.
+ */
+public class MemphisPublisherConsumer implements Flow.Publisher<MemphisMessage> {
+    private static final long MIN_RETRY_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_RETRY_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final PartitionPulls pulls;
+    private final Map<Integer, String> stationNames = new ConcurrentSkipListMap<>();
+    private final Acknowledger acknowledger;
+    private final ScheduledExecutorService scheduler;
+    private final String consumerGroup;
+    private final long maxWaitNanos;
+    private final int batchSize;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final PartitionsUpdateSubscriber partitionsUpdates;
+    private final String stationName;
+    private final Consumer<List<Integer>> partitionsListener = this::updatePartitions;
+    private volatile DemandSubscription subscription;
+
+    public MemphisPublisherConsumer(Connection brokerConnection, ClientOptions clientOptions, ConsumerOptions consumerOptions, List<Integer> partitions,
+                                    ScheduledExecutorService scheduler, KeepAliveService keepAliveService, MemoryBudget connectionBudget,
+                                    PartitionsUpdateSubscriber partitionsUpdates) throws MemphisException {
+        this.acknowledger = new Acknowledger(brokerConnection, clientOptions.timeout);
+        this.scheduler = scheduler;
+        this.consumerGroup = consumerOptions.consumersGroup;
+        this.maxWaitNanos = clientOptions.maxWaitTime.toNanos();
+        this.batchSize = clientOptions.batchSize;
+        MemoryBudget budget = new MemoryBudget(consumerOptions.maxPrefetchedBytes, connectionBudget);
+
+        LagTracker lagTracker = new LagTracker(keepAliveService, consumerOptions.stationName, consumerGroup, stationNames, null);
+
+        try {
+            this.pulls = new PartitionPulls(brokerConnection.jetStream(), consumerOptions, budget, stationNames, lagTracker);
+        } catch (IOException e) {
+            throw new MemphisException(e.getMessage());
+        }
+        for(Integer partition : partitions) {
+            pulls.add(partition);
+        }
+        this.partitionsUpdates = partitionsUpdates;
+        this.stationName = consumerOptions.stationName;
+        partitionsUpdates.subscribe(stationName, partitionsListener);
+    }
+
+    /**
+     * Subscribes the only subscriber this consumer accepts.  Further
+     * subscribers receive an IllegalStateException through onError.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super MemphisMessage> subscriber) {
+        if(!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("This consumer already has a subscriber."));
+            return;
+        }
+        subscription = new DemandSubscription(subscriber);
+        subscription.start();
+    }
+
+    /**
+     * @return an Acknowledger for acknowledging messages of this consumer in bulk
+     */
+    public Acknowledger getAcknowledger() {
+        return acknowledger;
+    }
+
+    /**
+     * Switches the consumer to a new partition list, as sent by the broker
+     * when the station's partitions change.  The drain it triggers
+     * subscribes to new partitions; removed partitions keep being drained
+     * until their open pulls have ended.
+     * @param partitions the station's partitions
+     */
+    public void updatePartitions(List<Integer> partitions) {
+        pulls.update(partitions);
+        DemandSubscription current = subscription;
+        if(current != null) {
+            current.signal();
+        }
+    }
+
+    private void release() {
+        partitionsUpdates.unsubscribe(stationName, partitionsListener);
+        pulls.close();
+    }
+
+    /**
+     * Runs at most one drain at a time on the scheduler: signal()
+     * requests a drain, and a drain that was requested while running
+     * runs again before returning.  Pulls are awaited on the waiters
+     * executor, which signals when a wait returns.
+     */
+    private class DemandSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super MemphisMessage> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final ExecutorService waiters;
+        private volatile boolean canceled = false;
+        private volatile Throwable error;
+        private boolean done = false;
+        private long retryDelayNanos = MIN_RETRY_DELAY_NANOS;
+        private ScheduledFuture<?> retry;
+
+        private DemandSubscription(Flow.Subscriber<? super MemphisMessage> subscriber) {
+            this.subscriber = subscriber;
+            this.waiters = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "memphis-publisher-" + stationName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        private void start() {
+            subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long n) {
+            if(n <= 0) {
+                // signaled by the drain, so that it is serialized with onNext
+                error = new IllegalArgumentException("Demand must be positive, got " + n + ".");
+                canceled = true;
+                signal();
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+            signal();
+        }
+
+        private void signal() {
+            if(wip.getAndIncrement() == 0) {
+                try {
+                    scheduler.execute(this::drainLoop);
+                } catch(RejectedExecutionException e) {
+                    canceled = true;
+                }
+            }
+        }
+
+        private void drainLoop() {
+            do {
+                drain();
+            } while(wip.decrementAndGet() != 0);
+        }
+
+        private void drain() {
+            if(done) {
+                return;
+            }
+            if(canceled) {
+                finish();
+                if(error != null) {
+                    subscriber.onError(error);
+                }
+                return;
+            }
+
+            MessageBatch messages = new MessageBatch();
+            long now = System.nanoTime();
+            // set when a pull is wanted that cannot be sent or awaited yet
+            boolean mustRetry = false;
+            try {
+                try {
+                    pulls.apply();
+                } catch(MemphisException e) {
+                    mustRetry = true;
+                }
+                long wanted = demand.get();
+                int limit = (int) Math.min(wanted, Integer.MAX_VALUE);
+                pulls.drainRetiring(messages, limit, consumerGroup, now);
+                for(PartitionPull pull : pulls.active()) {
+                    if(!pull.isAwaiting()) {
+                        pull.drain(messages, limit, consumerGroup);
+                    }
+                }
+
+                long open = 0;
+                for(PartitionPull pull : pulls.active()) {
+                    open += pull.outstanding(now);
+                }
+                long needed = wanted - messages.size() - open;
+                if(needed > 0 && pulls.size() > 0) {
+                    long share = Math.min(batchSize, (needed + pulls.size() - 1) / pulls.size());
+                    for(PartitionPull pull : pulls.active()) {
+                        if(!pull.isAwaiting() && !pull.isOpen(now)) {
+                            mustRetry |= !pull.start((int) share, maxWaitNanos);
+                        }
+                    }
+                }
+
+                if(wanted > messages.size()) {
+                    for(PartitionPull pull : pulls.active()) {
+                        await(pull, now);
+                    }
+                }
+                for(PartitionPull pull : pulls.retiring()) {
+                    await(pull, now);
+                }
+            } catch(IllegalStateException e) {
+                done = true;
+                release();
+                subscriber.onError(e);
+                return;
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finish();
+                subscriber.onError(e);
+                return;
+            }
+
+            for(MemphisMessage message : messages.messages()) {
+                if(canceled) {
+                    message.nak();
+                    continue;
+                }
+                subscriber.onNext(message);
+                demand.getAndUpdate(current -> current == Long.MAX_VALUE ? current : current - 1);
+            }
+
+            if(!mustRetry) {
+                retryDelayNanos = MIN_RETRY_DELAY_NANOS;
+            } else if(retry == null || retry.isDone()) {
+                // the memory budget is exhausted or a partition could not
+                // be subscribed to, so nothing else may trigger a drain
+                try {
+                    retry = scheduler.schedule(this::signal, retryDelayNanos, TimeUnit.NANOSECONDS);
+                } catch(RejectedExecutionException e) {
+                    // the executor has been shut down along with the connection
+                    finish();
+                    return;
+                }
+                retryDelayNanos = Math.min(retryDelayNanos * 2, MAX_RETRY_DELAY_NANOS);
+            }
+        }
+
+        /**
+         * Waits for the next message of an open pull on the waiters
+         * executor, and drains once it arrives or the pull expires.
+         */
+        private void await(PartitionPull pull, long now) {
+            if(pull.isAwaiting() || pull.hasPendingMessages() || !pull.isOpen(now)) {
+                return;
+            }
+            pull.beginAwait();
+            try {
+                waiters.execute(() -> {
+                    try {
+                        pull.await();
+                    } catch(InterruptedException e) {
+                        // released by finish()
+                        return;
+                    } catch(IllegalStateException e) {
+                        // unsubscribed; the drain reports it if the consumer is still in use
+                    }
+                    signal();
+                });
+            } catch(RejectedExecutionException e) {
+                // shut down by finish()
+            }
+        }
+
+        private void finish() {
+            done = true;
+            if(retry != null) {
+                retry.cancel(false);
+            }
+            waiters.shutdownNow();
+            release();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.Acknowledger;
+import dev.memphis.sdk.ClientOptions;
+import dev.memphis.sdk.MemphisException;
+import dev.memphis.sdk.MemphisMessage;
+import dev.memphis.sdk.Utils;
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
+import io.nats.client.*;
+import io.nats.client.api.AckPolicy;
+import io.nats.client.api.ConsumerConfiguration;
+import io.nats.client.api.ConsumerInfo;
+import io.nats.client.api.DeliverPolicy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A consumer to which the broker pushes messages as soon as they are
+ * stored, instead of waiting to be pulled, for the lowest latency.  Each
+ * message is passed to the callback on its own.
+ *
+ * Push delivery uses its own durable consumer per consumer group, named
+ * after the group with a "_push" suffix, whose members share the
+ * messages as a queue group.  The number of messages delivered but not
+ * yet acknowledged is bounded by ConsumerOptions.maxAckPending; the
+ * broker stops pushing to the group while it is reached.
+ *
+ * The push consumer is created with the start position of
+ * ConsumerOptions by the first member of the group to subscribe to it;
+ * later members, and members that restart, bind to it as it is.
+ * destroy() deletes it once its last subscriber is gone.
+ *
+ * Since pull consumers read through the group's own durable consumer, a
+ * push and a pull consumer of the same group each receive every message.
+ * A group should therefore consume either by push or by pull; the broker
+ * cannot tell the two apart reliably, so mixing them is not checked.
+ *
+ * When the broker changes the station's partitions, new partitions are
+ * subscribed to, and subscriptions of removed partitions are drained, so
+ * messages already pushed still reach the callback.
+ */
+public class MemphisPushConsumer {
+    private static final String STATION_SUFFIX = ".final";
+    private static final String DURABLE_SUFFIX = "_push";
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final Connection brokerConnection;
+    private final JetStream context;
+    private final JetStreamManagement jsManagement;
+    private final ConsumerOptions consumerOptions;
+    private List<Integer> partitions;
+    private final MemphisConsumerCallback callback;
+    private final Executor callbackExecutor;
+    private final Acknowledger acknowledger;
+    private final Duration timeout;
+    private final String durableName;
+    private final Map<Integer, String> stationNames = new ConcurrentSkipListMap<>();
+    private final LagTracker lagTracker;
+    private final Map<Integer, JetStreamSubscription> subscriptions = new TreeMap<>();
+    private final PartitionsUpdateSubscriber partitionsUpdates;
+    private final PartitionsUpdater partitionsListener;
+    private Dispatcher dispatcher;
+
+    public MemphisPushConsumer(Connection brokerConnection, ClientOptions clientOptions, ConsumerOptions consumerOptions, List<Integer> partitions,
+                               MemphisConsumerCallback callbackFunction, ScheduledExecutorService scheduler, Executor callbackExecutor,
+                               KeepAliveService keepAliveService, PartitionsUpdateSubscriber partitionsUpdates) throws MemphisException {
+        this.brokerConnection = brokerConnection;
+        this.consumerOptions = consumerOptions;
+        this.partitions = List.copyOf(partitions);
+        this.callback = callbackFunction;
+        this.callbackExecutor = callbackExecutor;
+        this.acknowledger = new Acknowledger(brokerConnection, clientOptions.timeout);
+        this.timeout = clientOptions.timeout;
+        this.durableName = consumerOptions.consumersGroup + DURABLE_SUFFIX;
+        this.lagTracker = new LagTracker(keepAliveService, consumerOptions.stationName, durableName,
+                stationNames, consumerOptions.lagListener);
+
+        try {
+            this.context = brokerConnection.jetStream();
+            this.jsManagement = brokerConnection.jetStreamManagement();
+        } catch(IOException e) {
+            throw new MemphisException(e.getMessage());
+        }
+        for(Integer partition : partitions) {
+            stationNames.put(partition, Utils.getInternalName(consumerOptions.stationName) + "$" + partition);
+        }
+        this.partitionsUpdates = partitionsUpdates;
+        this.partitionsListener = new PartitionsUpdater(this::updatePartitions, scheduler);
+    }
+
+    /**
+     * Subscribes to every partition, creating the group's push consumer
+     * on the first start.  Messages are delivered from then on.
+     * @throws MemphisException if the group is consumed by pull consumers or a subscription cannot be created
+     */
+    public synchronized void start() throws MemphisException {
+        if(dispatcher != null) {
+            return;
+        }
+        partitionsUpdates.subscribe(consumerOptions.stationName, partitionsListener);
+        dispatcher = brokerConnection.createDispatcher();
+        try {
+            for(Integer partition : partitions) {
+                subscribe(partition);
+            }
+        } catch(MemphisException e) {
+            stop();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the consumer's info, or null if it does not exist
+     */
+    private static ConsumerInfo consumerInfo(JetStreamManagement jsManagement, String completeStationName, String durable) throws MemphisException {
+        try {
+            return jsManagement.getConsumerInfo(completeStationName, durable);
+        } catch(JetStreamApiException e) {
+            if(e.getErrorCode() == 404) {
+                return null;
+            }
+            throw new MemphisException(e.getMessage());
+        } catch(IOException e) {
+            throw new MemphisException(e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the group's push consumer on the partition if it does not
+     * exist yet, or binds to it as it is, so that its position is not
+     * reset by members joining later.
+     */
+    private void subscribe(int partition) throws MemphisException {
+        String completeStationName = stationNames.get(partition);
+        JetStreamSubscription sub;
+        try {
+            if(consumerInfo(jsManagement, completeStationName, durableName) != null) {
+                sub = subscribe(completeStationName, null);
+            } else {
+                try {
+                    sub = subscribe(completeStationName, configuration(completeStationName));
+                } catch(JetStreamApiException e) {
+                    if(consumerInfo(jsManagement, completeStationName, durableName) == null) {
+                        throw e;
+                    }
+                    // another member of the group created it in the meantime
+                    sub = subscribe(completeStationName, null);
+                }
+            }
+        } catch(IOException | JetStreamApiException | IllegalStateException e) {
+            throw new MemphisException(e.getMessage());
+        }
+        subscriptions.put(partition, sub);
+        lagTracker.register(partition);
+    }
+
+    /**
+     * @param configuration settings to create the push consumer with, or null to bind to the existing one
+     */
+    private JetStreamSubscription subscribe(String completeStationName, ConsumerConfiguration configuration) throws IOException, JetStreamApiException {
+        PushSubscribeOptions.Builder builder = PushSubscribeOptions.builder()
+                .stream(completeStationName)
+                .durable(durableName)
+                .deliverGroup(consumerOptions.consumersGroup);
+        PushSubscribeOptions pushOptions = configuration != null
+                ? builder.configuration(configuration).build()
+                : builder.bind(true).build();
+        return context.subscribe(completeStationName + STATION_SUFFIX, consumerOptions.consumersGroup,
+                dispatcher, this::deliver, false, pushOptions);
+    }
+
+    /**
+     * Switches the consumer to a new partition list, as sent by the broker
+     * when the station's partitions change.  If the consumer is started,
+     * new partitions are subscribed to right away, and removed partitions
+     * stop receiving messages once those already pushed have been handed
+     * to the callback.  Updates from the broker that fail are retried
+     * with a growing delay.
+     * @param partitions the station's partitions
+     * @throws MemphisException if a new partition cannot be subscribed to
+     */
+    public synchronized void updatePartitions(List<Integer> partitions) throws MemphisException {
+        List<Integer> removed = new ArrayList<>(this.partitions);
+        removed.removeAll(partitions);
+        this.partitions = List.copyOf(partitions);
+
+        for(Integer partition : removed) {
+            JetStreamSubscription sub = subscriptions.remove(partition);
+            if(sub == null) {
+                stationNames.remove(partition);
+                continue;
+            }
+            try {
+                sub.drain(DRAIN_TIMEOUT).whenComplete((drained, e) -> unsubscribed(partition));
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unsubscribed(partition);
+            } catch(IllegalStateException e) {
+                // already closed along with the connection
+                unsubscribed(partition);
+            }
+        }
+        for(Integer partition : partitions) {
+            stationNames.putIfAbsent(partition, Utils.getInternalName(consumerOptions.stationName) + "$" + partition);
+            if(dispatcher != null && !subscriptions.containsKey(partition)) {
+                subscribe(partition);
+            }
+        }
+    }
+
+    private synchronized void unsubscribed(int partition) {
+        lagTracker.unregister(partition);
+        if(!partitions.contains(partition)) {
+            stationNames.remove(partition);
+        }
+    }
+
+    /**
+     * The settings of the consumers the broker creates for groups, as far
+     * as they apply to push consumers, used to create the push consumer.
+     */
+    private ConsumerConfiguration configuration(String completeStationName) throws IOException, JetStreamApiException {
+        ConsumerConfiguration.Builder builder = ConsumerConfiguration.builder()
+                .ackPolicy(AckPolicy.Explicit)
+                .ackWait(Duration.ofMillis(consumerOptions.maxAckTimeMs))
+                .maxDeliver(consumerOptions.maxMsgDeliveries)
+                .maxAckPending(consumerOptions.maxAckPending);
+        if(consumerOptions.lastMessages >= 0) {
+            long lastSequence = jsManagement.getStreamInfo(completeStationName).getStreamState().getLastSequence();
+            builder.deliverPolicy(DeliverPolicy.ByStartSequence)
+                    .startSequence(Math.max(lastSequence - consumerOptions.lastMessages + 1, 1));
+        } else {
+            builder.deliverPolicy(DeliverPolicy.ByStartSequence)
+                    .startSequence(consumerOptions.startConsumeFromSequence);
+        }
+        return builder.build();
+    }
+
+    private void deliver(Message msg) {
+        List<MemphisMessage> messages = List.of(new MemphisMessage(msg, consumerOptions.consumersGroup));
+        if(callbackExecutor == null) {
+            callback.accept(messages);
+        } else {
+            callbackExecutor.execute(() -> callback.accept(messages));
+        }
+    }
+
+    /**
+     * Returns the lag of the group's push consumer as of the last
+     * keep-alive of each partition.
+     */
+    public ConsumerLag getLag() {
+        return lagTracker.lag();
+    }
+
+    /**
+     * @return an Acknowledger for acknowledging messages of this consumer in bulk
+     */
+    public Acknowledger getAcknowledger() {
+        return acknowledger;
+    }
+
+    /**
+     * Stops delivery.  The group's push consumer is kept, so delivery
+     * resumes where it stopped on the next start.
+     */
+    public synchronized void stop() {
+        partitionsUpdates.unsubscribe(consumerOptions.stationName, partitionsListener);
+        partitionsListener.cancel();
+        if(dispatcher == null) {
+            return;
+        }
+        for(Integer partition : subscriptions.keySet()) {
+            lagTracker.unregister(partition);
+        }
+        subscriptions.clear();
+        try {
+            brokerConnection.closeDispatcher(dispatcher);
+        } catch(IllegalStateException e) {
+            // already closed along with the connection
+        }
+        dispatcher = null;
+    }
+
+    /**
+     * Stops delivery and deletes the group's push consumer, unless other
+     * members of the group are still subscribed to it.  Its position is
+     * lost: the next push consumer of the group starts from
+     * ConsumerOptions again.
+     * @throws MemphisException if the push consumer cannot be deleted
+     */
+    public synchronized void destroy() throws MemphisException {
+        stop();
+        try {
+            // make sure the broker has seen the subscriptions go
+            brokerConnection.flush(timeout);
+        } catch(TimeoutException e) {
+            throw new MemphisException(e.getMessage());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MemphisException("Interrupted while destroying the consumer.");
+        }
+        for(String completeStationName : stationNames.values()) {
+            ConsumerInfo info = consumerInfo(jsManagement, completeStationName, durableName);
+            if(info == null || info.isPushBound()) {
+                continue;
+            }
+            try {
+                jsManagement.deleteConsumer(completeStationName, durableName);
+            } catch(IOException | JetStreamApiException e) {
+                throw new MemphisException(e.getMessage());
+            }
+        }
+    }
+}
@@ -1,93 +1,185 @@
 package dev.memphis.sdk.consumer;
 
+import dev.memphis.sdk.Acknowledger;
 import dev.memphis.sdk.ClientOptions;
 import dev.memphis.sdk.MemphisException;
 import dev.memphis.sdk.MemphisMessage;
-import dev.memphis.sdk.Utils;
+import dev.memphis.sdk.MessageBatch;
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
 import io.nats.client.*;
 
 import java.io.IOException;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
- * A consumer that fetches batches of messages synchronously.
+ * A consumer that fetches batches of messages synchronously.  Changes to
+ * the station's partitions sent by the broker take effect at the next
+ * fetch.
  */
 public class MemphisSyncConsumer {
-    private static final String STATION_SUFFIX = ".final";
-    private final List<Integer> partitions;
-    private final Map<Integer, JetStreamSubscription> subscriptions = new HashMap<>();
-    private final Map<Integer, Thread> keepAliveThreads = new HashMap<>();
-    private final Map<Integer, ConsumerKeepAlive> keepAlives = new HashMap<>();
+    private final Acknowledger acknowledger;
+    private static final long MIN_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MIN_PULL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final PartitionPulls pulls;
+    private final Map<Integer, String> stationNames = new ConcurrentSkipListMap<>();
+    private final LagTracker lagTracker;
 
     private final String consumerGroup;
     private final Duration maxWaitTime;
     private final int batchSize;
+    private final boolean reuseMessages;
+    private final PartitionsUpdateSubscriber partitionsUpdates;
+    private final String stationName;
+    private final Consumer<List<Integer>> partitionsListener = this::updatePartitions;
+    private MessageBatch lastBatch;
 
-    public MemphisSyncConsumer(Connection brokerConnection, ClientOptions clientOptions, ConsumerOptions consumerOptions, List<Integer> partitions) throws MemphisException {
-        this.partitions = partitions;
+    public MemphisSyncConsumer(Connection brokerConnection, ClientOptions clientOptions, ConsumerOptions consumerOptions, List<Integer> partitions,
+                               KeepAliveService keepAliveService, MemoryBudget connectionBudget,
+                               PartitionsUpdateSubscriber partitionsUpdates) throws MemphisException {
+        this.acknowledger = new Acknowledger(brokerConnection, clientOptions.timeout);
+        this.lagTracker = new LagTracker(keepAliveService, consumerOptions.stationName, consumerOptions.consumersGroup,
+                stationNames, consumerOptions.lagListener);
         this.consumerGroup = consumerOptions.consumersGroup;
         this.maxWaitTime = clientOptions.maxWaitTime;
         this.batchSize = clientOptions.batchSize;
-
-        PullSubscribeOptions pullOptions = PullSubscribeOptions.builder()
-                .durable(this.consumerGroup)
-                .build();
+        this.reuseMessages = consumerOptions.reuseMessages;
+        MemoryBudget budget = new MemoryBudget(consumerOptions.maxPrefetchedBytes, connectionBudget);
 
         try {
-            var context = brokerConnection.jetStream();
-            for(Integer partition : partitions) {
-                String internalName = Utils.getInternalName(consumerOptions.stationName);
-                String completeStationName = internalName + "$" + partition;
-                JetStreamSubscription sub = context.subscribe(completeStationName + STATION_SUFFIX, pullOptions);
-                subscriptions.put(partition, sub);
-
-                ConsumerKeepAlive keepAlive = new ConsumerKeepAlive(brokerConnection.jetStreamManagement(), completeStationName, consumerOptions.consumersGroup, Duration.ofSeconds(10));
-                Thread keepAliveThread = new Thread(keepAlive);
-                keepAliveThread.start();
-                keepAliveThreads.put(partition, keepAliveThread);
-                keepAlives.put(partition, keepAlive);
-            }
-        } catch (IOException | JetStreamApiException e) {
+            this.pulls = new PartitionPulls(brokerConnection.jetStream(), consumerOptions, budget, stationNames, lagTracker);
+        } catch (IOException e) {
             throw new MemphisException(e.getMessage());
         }
+        for(Integer partition : partitions) {
+            pulls.add(partition);
+        }
+        this.partitionsUpdates = partitionsUpdates;
+        this.stationName = consumerOptions.stationName;
+        partitionsUpdates.subscribe(stationName, partitionsListener);
     }
 
     /**
-     * Fetches a batch of messages synchronously.
+     * Fetches a batch of messages synchronously: up to batchSize messages
+     * per partition, waiting at most maxWaitTime overall.
      * @return a list of MemphisMessage objects
      * @throws MemphisException
+     * @see #fetch(int, Duration)
      */
     public List<MemphisMessage> fetch() throws MemphisException {
-        List<MemphisMessage> memphisMessages = new ArrayList<>();
+        return fetch(batchSize * Math.max(pulls.size(), 1), maxWaitTime);
+    }
+
+    /**
+     * Fetches up to maxMessages messages from all partitions at once.
+     * Pull requests are sent to every partition up front, each for its
+     * share of the messages still needed, and renewed as they complete.
+     * Returns as soon as maxMessages messages have arrived or the timeout
+     * expires, whichever comes first.
+     *
+     * Pull requests still open when this call returns keep delivering;
+     * those messages are returned by the next fetch, and their ack wait
+     * time is already running.
+     *
+     * With ConsumerOptions.reuseMessages, the returned list and its
+     * messages are reused by the next fetch and must not be used after
+     * it is called.
+     * @param maxMessages maximum number of messages to return
+     * @param timeout maximum time to wait for messages
+     * @return a list of MemphisMessage objects, possibly empty
+     * @throws MemphisException if the subscription is closed or the wait is interrupted
+     */
+    public synchronized List<MemphisMessage> fetch(int maxMessages, Duration timeout) throws MemphisException {
+        if(maxMessages < 1) {
+            throw new MemphisException("At least one message must be requested.");
+        }
+
+        pulls.apply();
+        MessageBatch memphisMessages = nextBatch();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long idleNanos = MIN_IDLE_NANOS;
         try {
-            for (Integer partNumber : partitions) {
-                JetStreamSubscription sub = subscriptions.get(partNumber);
-                for (Message msg : sub.fetch(batchSize, maxWaitTime)) {
-                    memphisMessages.add(new MemphisMessage(msg, consumerGroup));
+            while(memphisMessages.size() < maxMessages) {
+                long now = System.nanoTime();
+                int needed = maxMessages - memphisMessages.size();
+                int share = (needed + pulls.size() - 1) / Math.max(pulls.size(), 1);
+                boolean received = pulls.drainRetiring(memphisMessages, maxMessages, consumerGroup, now);
+                for(PartitionPull pull : pulls.active()) {
+                    if(!pull.isOpen(now) && deadline - now >= MIN_PULL_NANOS) {
+                        pull.start(share, deadline - now);
+                    }
+                    received |= pull.drain(memphisMessages, maxMessages, consumerGroup);
+                }
+
+                if(memphisMessages.size() >= maxMessages || System.nanoTime() >= deadline) {
+                    break;
+                }
+                if(received) {
+                    idleNanos = MIN_IDLE_NANOS;
+                } else {
+                    TimeUnit.NANOSECONDS.sleep(Math.min(idleNanos, deadline - System.nanoTime()));
+                    idleNanos = Math.min(idleNanos * 2, MAX_IDLE_NANOS);
                 }
             }
         } catch(IllegalStateException e) {
             throw new MemphisException(e.getMessage());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MemphisException("Interrupted while fetching messages.");
+        }
+
+        return memphisMessages.messages();
+    }
+
+    private MessageBatch nextBatch() {
+        if(!reuseMessages) {
+            return new MessageBatch();
+        }
+        if(lastBatch == null) {
+            lastBatch = new MessageBatch();
+        } else {
+            lastBatch.clear();
         }
+        return lastBatch;
+    }
 
-        return memphisMessages;
+    /**
+     * Switches the consumer to a new partition list, as sent by the broker
+     * when the station's partitions change.  The next fetch subscribes to
+     * new partitions; removed partitions keep being drained until their
+     * open pulls have ended.
+     * @param partitions the station's partitions
+     */
+    public void updatePartitions(List<Integer> partitions) {
+        pulls.update(partitions);
     }
 
     /**
-     * Destroy the consumer object.
+     * Returns the lag of the consumer group as of the last keep-alive of
+     * each partition, without calling the broker.
      */
-    public void destroy() throws InterruptedException {
-        for(Integer partNumber : partitions) {
-            keepAlives.get(partNumber).cancel();
-        }
+    public ConsumerLag getLag() {
+        return lagTracker.lag();
+    }
 
-        for(Integer partNumber : partitions) {
-            keepAliveThreads.get(partNumber).join();
-            subscriptions.get(partNumber).unsubscribe();
-        }
+    /**
+     * @return an Acknowledger for acknowledging messages of this consumer in bulk
+     */
+    public Acknowledger getAcknowledger() {
+        return acknowledger;
+    }
+
+    /**
+     * Destroy the consumer object.
+     */
+    public synchronized void destroy() throws InterruptedException {
+        partitionsUpdates.unsubscribe(stationName, partitionsListener);
+        pulls.close();
     }
 }
@@ -0,0 +1,28 @@
+package dev.memphis.sdk.consumer;
+
+import io.nats.client.api.ConsumerInfo;
+
+/**
+ * Backlog of a consumer group on one partition, as of the last keep-alive.
+ */
+public class PartitionLag {
+    public final int partition;
+    public final long pending;
+    public final long ackPending;
+    public final long redelivered;
+    public final long lastDeliveredSequence;
+
+    PartitionLag(int partition, ConsumerInfo info) {
+        this.partition = partition;
+        this.pending = info.getNumPending();
+        this.ackPending = info.getNumAckPending();
+        this.redelivered = info.getRedelivered();
+        this.lastDeliveredSequence = info.getDelivered() != null ? info.getDelivered().getStreamSequence() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("partition %d: pending %d, ack pending %d, redelivered %d, last delivered %d",
+                partition, pending, ackPending, redelivered, lastDeliveredSequence);
+    }
+}
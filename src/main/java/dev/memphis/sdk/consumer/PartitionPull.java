@@ -0,0 +1,170 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.MessageBatch;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import io.nats.client.PullRequestOptions;
+
+import java.time.Duration;
+
+/**
+ * Tracks the pull request that is open on one partition, so that
+ * callers can keep pulls open on many partitions at once and collect
+ * what arrives without blocking.  Not thread-safe, except that await()
+ * may run on another thread while the other methods leave the pull's
+ * messages alone: callers check isAwaiting() before drain().
+ *
+ * A pull whose max_bytes is smaller than the next message ends without
+ * delivering anything, so the pull that follows one ending that way asks
+ * for a single message without max_bytes: the partition's reservation
+ * may then be exceeded by that message, but the partition cannot be
+ * stuck behind it.
+ */
+class PartitionPull {
+    private static final Duration DRAIN_WAIT = Duration.ofMillis(1);
+
+    private final JetStreamSubscription sub;
+    private final MemoryBudget budget;
+    private final int maxBytes;
+    private int requested;
+    private int outstanding;
+    private int reservedBytes;
+    private long expiresAt;
+    private boolean starved = false;
+    private Message held;
+    private volatile boolean awaiting = false;
+
+    /**
+     * @param maxBytes max_bytes of each pull, or 0 for none
+     */
+    public PartitionPull(JetStreamSubscription sub, MemoryBudget budget, int maxBytes) {
+        this.sub = sub;
+        this.budget = budget;
+        this.maxBytes = maxBytes;
+    }
+
+    public JetStreamSubscription subscription() {
+        return sub;
+    }
+
+    /**
+     * A pull limited in bytes may end before delivering all its messages,
+     * which the client's pull status tells.  Releases the reservation of
+     * a pull found closed.
+     */
+    public boolean isOpen(long now) {
+        boolean open = outstanding > 0 && now < expiresAt
+                && (reservedBytes == 0 || sub.getPullStatus().getPendingMessages() > 0);
+        if(!open && reservedBytes > 0) {
+            starved = outstanding == requested && now < expiresAt;
+            budget.release(reservedBytes);
+            reservedBytes = 0;
+        }
+        return open;
+    }
+
+    /**
+     * @return the number of messages the open pull may still deliver
+     */
+    public int outstanding(long now) {
+        return isOpen(now) ? outstanding : 0;
+    }
+
+    /**
+     * Sends a pull request unless the memory budget is exhausted.
+     * @return true if the pull was sent
+     */
+    public boolean start(int numMessages, long expiresInNanos) {
+        int bytes = budget.reserve(maxBytes);
+        if(bytes < 0) {
+            return false;
+        }
+        boolean single = starved && bytes > 0;
+        int count = single ? 1 : numMessages;
+        try {
+            if(bytes > 0 && !single) {
+                sub.pull(PullRequestOptions.builder(count).maxBytes(bytes).expiresIn(Duration.ofNanos(expiresInNanos)).build());
+            } else {
+                sub.pullExpiresIn(count, Duration.ofNanos(expiresInNanos));
+            }
+        } catch(RuntimeException e) {
+            budget.release(bytes);
+            throw e;
+        }
+        requested = count;
+        outstanding = count;
+        reservedBytes = bytes;
+        expiresAt = System.nanoTime() + expiresInNanos;
+        return true;
+    }
+
+    /**
+     * Releases the reservation of the open pull, if any, for a pull that
+     * will not be read anymore.
+     */
+    public void close() {
+        budget.release(reservedBytes);
+        reservedBytes = 0;
+        outstanding = 0;
+    }
+
+    /**
+     * Marks the pull as awaited, before await() is handed to another thread.
+     */
+    public void beginAwait() {
+        awaiting = true;
+    }
+
+    public boolean isAwaiting() {
+        return awaiting;
+    }
+
+    /**
+     * Blocks until a message arrives or the open pull expires, and keeps
+     * the message for the next drain.
+     * @return true if a message arrived
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean await() throws InterruptedException {
+        try {
+            long wait = expiresAt - System.nanoTime();
+            if(held == null && wait > 0) {
+                held = sub.nextMessage(Duration.ofNanos(wait));
+            }
+            return held != null;
+        } finally {
+            awaiting = false;
+        }
+    }
+
+    /**
+     * @return true if messages have arrived that were not drained yet
+     */
+    public boolean hasPendingMessages() {
+        return held != null || sub.getPendingMessageCount() > 0;
+    }
+
+    /**
+     * Moves messages that have arrived into the batch, without waiting.
+     * @return true if any message was moved
+     */
+    public boolean drain(MessageBatch messages, int maxMessages, String consumerGroup) throws InterruptedException {
+        boolean received = false;
+        if(held != null && messages.size() < maxMessages) {
+            messages.add(held, consumerGroup);
+            held = null;
+            outstanding--;
+            received = true;
+        }
+        while(messages.size() < maxMessages && sub.getPendingMessageCount() > 0) {
+            Message msg = sub.nextMessage(DRAIN_WAIT);
+            if(msg == null) {
+                break;
+            }
+            messages.add(msg, consumerGroup);
+            outstanding--;
+            received = true;
+        }
+        return received;
+    }
+}
@@ -0,0 +1,172 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.MemphisException;
+import dev.memphis.sdk.MessageBatch;
+import dev.memphis.sdk.Utils;
+import io.nats.client.JetStream;
+import io.nats.client.JetStreamApiException;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.PullSubscribeOptions;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The pulls of a consumer's partitions, in partition order.
+ *
+ * Partition updates from the broker are recorded by update() and applied
+ * by the thread reading the pulls, at its next call to apply().  Pulls
+ * of removed partitions are retired: they send no new pull requests and
+ * are drained by drainRetiring() until their last pull has ended, then
+ * unsubscribed.  Not thread-safe, except for update().
+ */
+class PartitionPulls {
+    private static final String STATION_SUFFIX = ".final";
+
+    private final JetStream context;
+    private final PullSubscribeOptions pullOptions;
+    private final String internalName;
+    private final MemoryBudget budget;
+    private final int fetchMaxBytes;
+    private final Map<Integer, String> stationNames;
+    private final LagTracker lagTracker;
+    private final Map<Integer, PartitionPull> pulls = new TreeMap<>();
+    private final Map<Integer, PartitionPull> retiring = new TreeMap<>();
+    private final AtomicReference<List<Integer>> pendingPartitions = new AtomicReference<>();
+
+    /**
+     * @param stationNames internal station partition names keyed by partition number, shared with the lag tracker
+     */
+    public PartitionPulls(JetStream context, ConsumerOptions consumerOptions, MemoryBudget budget,
+                          Map<Integer, String> stationNames, LagTracker lagTracker) {
+        this.context = context;
+        this.pullOptions = PullSubscribeOptions.builder()
+                .durable(consumerOptions.consumersGroup)
+                .build();
+        this.internalName = Utils.getInternalName(consumerOptions.stationName);
+        this.budget = budget;
+        this.fetchMaxBytes = consumerOptions.fetchMaxBytes;
+        this.stationNames = stationNames;
+        this.lagTracker = lagTracker;
+    }
+
+    public void add(int partition) throws MemphisException {
+        String completeStationName = internalName + "$" + partition;
+        JetStreamSubscription sub;
+        try {
+            sub = context.subscribe(completeStationName + STATION_SUFFIX, pullOptions);
+        } catch(IOException | JetStreamApiException e) {
+            throw new MemphisException(e.getMessage());
+        }
+        pulls.put(partition, new PartitionPull(sub, budget, fetchMaxBytes));
+        stationNames.put(partition, completeStationName);
+        lagTracker.register(partition);
+    }
+
+    /**
+     * Records a new partition list, to be applied by the next call to apply().
+     */
+    public void update(List<Integer> partitions) {
+        pendingPartitions.set(List.copyOf(partitions));
+    }
+
+    /**
+     * Applies the last partition list recorded by update(), if any.  The
+     * list is applied again by the next call if a partition cannot be
+     * subscribed to.
+     */
+    public void apply() throws MemphisException {
+        List<Integer> partitions = pendingPartitions.get();
+        if(partitions == null) {
+            return;
+        }
+
+        Iterator<Map.Entry<Integer, PartitionPull>> it = pulls.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<Integer, PartitionPull> entry = it.next();
+            if(!partitions.contains(entry.getKey())) {
+                retiring.put(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+        }
+        for(Integer partition : partitions) {
+            if(!pulls.containsKey(partition)) {
+                PartitionPull pull = retiring.remove(partition);
+                if(pull != null) {
+                    pulls.put(partition, pull);
+                } else {
+                    add(partition);
+                }
+            }
+        }
+        pendingPartitions.compareAndSet(partitions, null);
+    }
+
+    /**
+     * @return the pulls of the current partitions
+     */
+    public Collection<PartitionPull> active() {
+        return pulls.values();
+    }
+
+    /**
+     * @return the pulls of removed partitions that are still being drained
+     */
+    public Collection<PartitionPull> retiring() {
+        return retiring.values();
+    }
+
+    public int size() {
+        return pulls.size();
+    }
+
+    /**
+     * Moves the messages that have arrived for retired partitions into the
+     * batch, and unsubscribes the retired partitions that have nothing left
+     * to deliver.  Pulls being awaited are left alone.
+     * @return true if any message was moved
+     */
+    public boolean drainRetiring(MessageBatch messages, int maxMessages, String consumerGroup, long now) throws InterruptedException {
+        boolean received = false;
+        Iterator<Map.Entry<Integer, PartitionPull>> it = retiring.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<Integer, PartitionPull> entry = it.next();
+            PartitionPull pull = entry.getValue();
+            if(pull.isAwaiting()) {
+                continue;
+            }
+            received |= pull.drain(messages, maxMessages, consumerGroup);
+            if(!pull.isOpen(now) && !pull.hasPendingMessages()) {
+                it.remove();
+                release(entry.getKey(), pull);
+                stationNames.remove(entry.getKey());
+            }
+        }
+        return received;
+    }
+
+    /**
+     * Unsubscribes every partition.
+     */
+    public void close() {
+        pulls.forEach(this::release);
+        retiring.forEach(this::release);
+        pulls.clear();
+        retiring.clear();
+    }
+
+    private void release(int partition, PartitionPull pull) {
+        lagTracker.unregister(partition);
+        try {
+            pull.subscription().unsubscribe();
+        } catch(IllegalStateException e) {
+            // already closed along with the connection
+        }
+        pull.close();
+    }
+}
@@ -0,0 +1,201 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.MemphisException;
+import dev.memphis.sdk.MemphisMessage;
+import dev.memphis.sdk.MessageBatch;
+import io.nats.client.JetStream;
+import io.nats.client.JetStreamApiException;
+import io.nats.client.JetStreamManagement;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.PullSubscribeOptions;
+import io.nats.client.api.AckPolicy;
+import io.nats.client.api.ConsumerConfiguration;
+import io.nats.client.api.ConsumerInfo;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a range of one partition through an ephemeral pull consumer
+ * that needs no acks, outside of the consumer group.  The range starts
+ * at a position and ends at another, or at the last message stored when
+ * the replay started; the replay then completes its future.  Runs on
+ * the consumer executor like a PartitionFetcher, without blocking.
+ *
+ * The ephemeral consumer is deleted once the replay completes, or by
+ * close() for a replay that will not be started.
+ */
+class PartitionReplay implements Runnable {
+    private static final long MIN_POLL_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_POLL_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final Duration INACTIVE_THRESHOLD = Duration.ofMinutes(1);
+
+    private final JetStreamManagement jsm;
+    private final JetStreamSubscription sub;
+    private final String streamName;
+    private final String consumerName;
+    private final PartitionPull pull;
+    private final ReplayPosition until;
+    private final int batchSize;
+    private final long maxWaitNanos;
+    private final String consumerGroup;
+    private final MemphisConsumerCallback callback;
+    private final ScheduledExecutorService scheduler;
+    private final Executor callbackExecutor;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private long remaining;
+    private long pollDelayNanos = MIN_POLL_DELAY_NANOS;
+    private volatile boolean canceled = false;
+
+    /**
+     * @param subject the subject of the station partition
+     * @param until inclusive end of the range, or null for the last message stored now
+     */
+    public PartitionReplay(JetStream js, JetStreamManagement jsm, String subject, ReplayPosition from, ReplayPosition until, int batchSize, Duration maxWaitTime,
+                           String consumerGroup, MemphisConsumerCallback callback, ScheduledExecutorService scheduler,
+                           Executor callbackExecutor, MemoryBudget budget, int fetchMaxBytes) throws MemphisException {
+        ConsumerConfiguration.Builder config = ConsumerConfiguration.builder()
+                .ackPolicy(AckPolicy.None)
+                .filterSubject(subject)
+                .inactiveThreshold(INACTIVE_THRESHOLD);
+        from.applyStart(config);
+
+        try {
+            this.sub = js.subscribe(subject, PullSubscribeOptions.builder().configuration(config.build()).build());
+        } catch(IOException | JetStreamApiException e) {
+            throw new MemphisException(e.getMessage());
+        }
+        ConsumerInfo info;
+        try {
+            info = sub.getConsumerInfo();
+        } catch(IOException | JetStreamApiException e) {
+            unsubscribe();
+            throw new MemphisException(e.getMessage());
+        }
+        this.jsm = jsm;
+        this.streamName = info.getStreamName();
+        this.consumerName = info.getName();
+        this.remaining = info.getNumPending();
+        this.pull = new PartitionPull(sub, budget, fetchMaxBytes);
+        this.until = until;
+        this.batchSize = batchSize;
+        this.maxWaitNanos = maxWaitTime.toNanos();
+        this.consumerGroup = consumerGroup;
+        this.callback = callback;
+        this.scheduler = scheduler;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * @return a future completed once the range has been delivered, or the replay was canceled
+     */
+    public CompletableFuture<Void> start() {
+        schedule(0);
+        return done;
+    }
+
+    public void cancel() {
+        canceled = true;
+    }
+
+    /**
+     * Unsubscribes and deletes the ephemeral consumer.  For a replay that
+     * was not started; a started replay does this when it completes.
+     */
+    public void close() {
+        pull.close();
+        unsubscribe();
+        try {
+            jsm.deleteConsumer(streamName, consumerName);
+        } catch(IOException | JetStreamApiException e) {
+            // the broker deletes it once its inactive threshold passes
+        }
+    }
+
+    private void unsubscribe() {
+        try {
+            sub.unsubscribe();
+        } catch(IllegalStateException e) {
+            // already closed along with the connection
+        }
+    }
+
+    @Override
+    public void run() {
+        if(canceled || remaining <= 0) {
+            finish(null);
+            return;
+        }
+
+        MessageBatch batch = new MessageBatch();
+        try {
+            long now = System.nanoTime();
+            if(!pull.isOpen(now)) {
+                pull.start((int) Math.min(batchSize, remaining), maxWaitNanos);
+            }
+            pull.drain(batch, batchSize, consumerGroup);
+        } catch(IllegalStateException e) {
+            finish(new MemphisException(e.getMessage()));
+            return;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(new MemphisException("Interrupted while replaying messages."));
+            return;
+        }
+
+        if(batch.isEmpty()) {
+            schedule(pollDelayNanos);
+            pollDelayNanos = Math.min(pollDelayNanos * 2, MAX_POLL_DELAY_NANOS);
+            return;
+        }
+        pollDelayNanos = MIN_POLL_DELAY_NANOS;
+
+        List<MemphisMessage> messages = batch.messages();
+        for(int i = 0; i < messages.size(); i++) {
+            if(until != null && until.isPassedBy(messages.get(i))) {
+                messages.subList(i, messages.size()).clear();
+                remaining = 0;
+                break;
+            }
+            remaining--;
+        }
+        if(messages.isEmpty()) {
+            finish(null);
+        } else if(callbackExecutor == null) {
+            deliver(messages);
+        } else {
+            callbackExecutor.execute(() -> deliver(messages));
+        }
+    }
+
+    private void deliver(List<MemphisMessage> messages) {
+        try {
+            callback.accept(messages);
+        } finally {
+            schedule(0);
+        }
+    }
+
+    private void schedule(long delayNanos) {
+        try {
+            scheduler.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+        } catch(RejectedExecutionException e) {
+            finish(new MemphisException("The connection has been closed."));
+        }
+    }
+
+    private void finish(MemphisException error) {
+        close();
+        if(error != null) {
+            done.completeExceptionally(error);
+        } else {
+            done.complete(null);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.MemphisException;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Applies the partition lists the broker sends to a consumer.  A list
+ * that cannot be applied, such as when a new partition cannot be
+ * subscribed to, is applied again after a delay that doubles up to
+ * MAX_RETRY_DELAY_MS, until it succeeds or a newer list replaces it.
+ */
+class PartitionsUpdater implements Consumer<List<Integer>> {
+    static final long MIN_RETRY_DELAY_MS = 1000;
+    static final long MAX_RETRY_DELAY_MS = 30000;
+
+    interface Update {
+        void apply(List<Integer> partitions) throws MemphisException;
+    }
+
+    private final Update update;
+    private final ScheduledExecutorService scheduler;
+    private volatile List<Integer> failed;
+    private long retryDelayMs = MIN_RETRY_DELAY_MS;
+    private volatile ScheduledFuture<?> retry;
+
+    PartitionsUpdater(Update update, ScheduledExecutorService scheduler) {
+        this.update = update;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public synchronized void accept(List<Integer> partitions) {
+        cancel();
+        try {
+            update.apply(partitions);
+            retryDelayMs = MIN_RETRY_DELAY_MS;
+        } catch(MemphisException e) {
+            failed = partitions;
+            try {
+                retry = scheduler.schedule(() -> retry(partitions), retryDelayMs, TimeUnit.MILLISECONDS);
+            } catch(RejectedExecutionException rejected) {
+                // the executor has been shut down along with the connection
+            }
+            retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+        }
+    }
+
+    private synchronized void retry(List<Integer> partitions) {
+        if(failed == partitions) {
+            accept(partitions);
+        }
+    }
+
+    /**
+     * Drops the pending retry, if any.  Does not take the lock held while
+     * applying a list, so that the consumer may call it holding its own.
+     */
+    public void cancel() {
+        failed = null;
+        ScheduledFuture<?> pending = retry;
+        if(pending != null) {
+            pending.cancel(false);
+        }
+    }
+}
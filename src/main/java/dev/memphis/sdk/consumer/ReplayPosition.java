@@ -0,0 +1,67 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.MemphisMessage;
+import io.nats.client.api.ConsumerConfiguration;
+import io.nats.client.api.DeliverPolicy;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+/**
+ * A position in a station partition, given either as a message sequence
+ * or as a point in time.
+ */
+public final class ReplayPosition {
+    private final long sequence;
+    private final Instant time;
+
+    private ReplayPosition(long sequence, Instant time) {
+        this.sequence = sequence;
+        this.time = time;
+    }
+
+    /**
+     * @param sequence sequence of a message in the partition, starting at 1
+     */
+    public static ReplayPosition ofSequence(long sequence) {
+        return new ReplayPosition(sequence, null);
+    }
+
+    /**
+     * @param time the time a message was stored by the broker
+     */
+    public static ReplayPosition ofTime(Instant time) {
+        return new ReplayPosition(0, time);
+    }
+
+    boolean isValid() {
+        return time != null || sequence > 0;
+    }
+
+    /**
+     * Sets a consumer to start at this position.
+     */
+    void applyStart(ConsumerConfiguration.Builder builder) {
+        if(time != null) {
+            builder.deliverPolicy(DeliverPolicy.ByStartTime).startTime(time.atZone(ZoneOffset.UTC));
+        } else {
+            builder.deliverPolicy(DeliverPolicy.ByStartSequence).startSequence(sequence);
+        }
+    }
+
+    /**
+     * @return true if the message lies beyond this position, taken as an inclusive end
+     */
+    boolean isPassedBy(MemphisMessage message) {
+        if(time != null) {
+            Instant timestamp = message.getTimestamp();
+            return timestamp != null && timestamp.isAfter(time);
+        }
+        return message.getSequence() > sequence;
+    }
+
+    @Override
+    public String toString() {
+        return time != null ? "time " + time : "sequence " + sequence;
+    }
+}
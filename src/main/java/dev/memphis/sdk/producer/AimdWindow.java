@@ -0,0 +1,129 @@
+package dev.memphis.sdk.producer;
+
+import dev.memphis.sdk.MemphisException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the publishes to one partition that are awaiting acknowledgement,
+ * adapting the bound to the round-trip time of the acks.
+ *
+ * The window grows by one message per window's worth of acks while the
+ * smoothed RTT stays within LATENCY_TOLERANCE times the lowest recent RTT,
+ * and is halved, at most once per RTT, when latency rises above that or a
+ * publish fails.  The lowest RTT is re-sampled every MIN_RTT_INTERVAL so
+ * the window follows changes in the network path.  A non-adaptive window
+ * keeps its initial size and only measures.
+ */
+class AimdWindow {
+    private static final int INITIAL_WINDOW = 16;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double RTT_SMOOTHING = 0.125;
+    private static final long MIN_RTT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final boolean adaptive;
+    private final int maxWindow;
+    private final ProducerOptions.BackpressureMode mode;
+    private double window;
+    private int inFlight;
+    private double smoothedRttNanos;
+    private long minRttNanos = Long.MAX_VALUE;
+    private long minRttSampledAt;
+    private long lastDecreaseNanos;
+
+    public AimdWindow(boolean adaptive, int maxWindow, ProducerOptions.BackpressureMode mode) {
+        this.adaptive = adaptive;
+        this.maxWindow = maxWindow;
+        this.mode = mode;
+        this.window = adaptive ? Math.min(INITIAL_WINDOW, maxWindow) : maxWindow;
+        this.minRttSampledAt = System.nanoTime();
+    }
+
+    /**
+     * Reserves a slot for a publish, blocking or failing while the window
+     * is full depending on the backpressure mode.
+     * @param wait block whatever the backpressure mode
+     * @return the time the slot was acquired, to pass to release
+     * @throws MemphisException if the window is full in fail-fast mode or the wait is interrupted
+     */
+    public synchronized long acquire(boolean wait) throws MemphisException {
+        while(inFlight >= (int) window) {
+            if(!wait && mode == ProducerOptions.BackpressureMode.FAIL_FAST) {
+                throw new MemphisException("Too many messages awaiting acknowledgement for this partition (window " + (int) window + ").");
+            }
+            try {
+                wait();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MemphisException("Interrupted while waiting for outstanding acknowledgements.");
+            }
+        }
+        inFlight++;
+        return System.nanoTime();
+    }
+
+    /**
+     * Frees a slot and adjusts the window.
+     * @param acquiredAt the value returned by acquire
+     * @param success whether the publish was acknowledged
+     */
+    public synchronized void release(long acquiredAt, boolean success) {
+        inFlight--;
+        long now = System.nanoTime();
+        if(success) {
+            sample(now - acquiredAt, now);
+        }
+
+        if(adaptive) {
+            if(!success || smoothedRttNanos > LATENCY_TOLERANCE * minRttNanos) {
+                if(now - lastDecreaseNanos > smoothedRttNanos) {
+                    window = Math.max(1, window * DECREASE_FACTOR);
+                    lastDecreaseNanos = now;
+                }
+            } else {
+                window = Math.min(maxWindow, window + 1 / window);
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Frees a slot that was acquired but never used for a publish.
+     */
+    public synchronized void cancel() {
+        inFlight--;
+        notifyAll();
+    }
+
+    private void sample(long rttNanos, long now) {
+        if(smoothedRttNanos == 0) {
+            smoothedRttNanos = rttNanos;
+        } else {
+            smoothedRttNanos += RTT_SMOOTHING * (rttNanos - smoothedRttNanos);
+        }
+
+        if(now - minRttSampledAt > MIN_RTT_INTERVAL_NANOS) {
+            minRttNanos = rttNanos;
+            minRttSampledAt = now;
+        } else {
+            minRttNanos = Math.min(minRttNanos, rttNanos);
+        }
+    }
+
+    public synchronized int window() {
+        return (int) window;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized double smoothedRttMillis() {
+        return smoothedRttNanos / 1e6;
+    }
+
+    public synchronized double minRttMillis() {
+        return minRttNanos == Long.MAX_VALUE ? 0 : minRttNanos / 1e6;
+    }
+}
@@ -0,0 +1,64 @@
+package dev.memphis.sdk.producer;
+
+import dev.memphis.sdk.MemphisException;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the number of asynchronous publishes that are waiting
+ * for an acknowledgement from the broker.
+ */
+class InFlightWindow {
+    private final int maxInFlight;
+    private final ProducerOptions.BackpressureMode mode;
+    private final Semaphore permits;
+
+    public InFlightWindow(int maxInFlight, ProducerOptions.BackpressureMode mode) {
+        this.maxInFlight = maxInFlight;
+        this.mode = mode;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Reserves a slot for a publish.  Depending on the backpressure mode,
+     * this either blocks until a slot frees up or fails immediately.
+     * @throws MemphisException if the window is full in fail-fast mode or the wait is interrupted
+     */
+    public void acquire() throws MemphisException {
+        if(mode == ProducerOptions.BackpressureMode.FAIL_FAST) {
+            if(!permits.tryAcquire()) {
+                throw new MemphisException("Too many messages awaiting acknowledgement (max " + maxInFlight + ").");
+            }
+            return;
+        }
+        acquireWaiting();
+    }
+
+    /**
+     * Reserves a slot for a publish, blocking until one frees up
+     * whatever the backpressure mode.
+     * @throws MemphisException if the wait is interrupted
+     */
+    public void acquireWaiting() throws MemphisException {
+        try {
+            permits.acquire();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MemphisException("Interrupted while waiting for outstanding acknowledgements.");
+        }
+    }
+
+    /**
+     * Frees a slot once its publish has been acknowledged or has failed.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * @return the number of publishes currently awaiting acknowledgement
+     */
+    public int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+}
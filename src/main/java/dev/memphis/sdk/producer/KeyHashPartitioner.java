@@ -0,0 +1,64 @@
+package dev.memphis.sdk.producer;
+
+/**
+ * Sends all messages with the same key to the same partition, so that
+ * they are consumed in the order they were produced.  Keys are hashed
+ * with 32-bit MurmurHash3.  Messages without a key are spread round-robin.
+ */
+public class KeyHashPartitioner implements Partitioner {
+    private static final int SEED = 0x9747b28c;
+
+    private final RoundRobinPartitioner unkeyed = new RoundRobinPartitioner();
+
+    @Override
+    public int partition(byte[] key, int payloadSize, int numPartitions) {
+        if(key == null) {
+            return unkeyed.partition(null, payloadSize, numPartitions);
+        }
+        return (murmur3(key, SEED) & 0x7fffffff) % numPartitions;
+    }
+
+    // the tail bytes are mixed in by cases falling through, as in the reference implementation
+    @SuppressWarnings("fallthrough")
+    static int murmur3(byte[] data, int seed) {
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+        int h = seed;
+        int length = data.length;
+        int roundedEnd = length & 0xfffffffc;
+
+        for(int i = 0; i < roundedEnd; i += 4) {
+            int k = (data[i] & 0xff) | ((data[i + 1] & 0xff) << 8) | ((data[i + 2] & 0xff) << 16) | (data[i + 3] << 24);
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            h ^= k;
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xe6546b64;
+        }
+
+        int k = 0;
+        switch(length & 3) {
+            case 3:
+                k = (data[roundedEnd + 2] & 0xff) << 16;
+                // fall through
+            case 2:
+                k |= (data[roundedEnd + 1] & 0xff) << 8;
+                // fall through
+            case 1:
+                k |= data[roundedEnd] & 0xff;
+                k *= c1;
+                k = Integer.rotateLeft(k, 15);
+                k *= c2;
+                h ^= k;
+        }
+
+        h ^= length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
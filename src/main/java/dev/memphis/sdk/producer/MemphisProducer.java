@@ -2,197 +2,551 @@ package dev.memphis.sdk.producer;
 
 import dev.memphis.sdk.MemphisConnectException;
 import dev.memphis.sdk.MemphisException;
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
 import io.nats.client.Connection;
 import io.nats.client.JetStream;
 import io.nats.client.api.PublishAck;
-import io.nats.client.impl.Headers;
 import io.nats.client.impl.NatsMessage;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
- * A simple synchronous producer.
+ * Produces messages to a station's partitions.  produce publishes a
+ * message and waits for its acknowledgement; produceAsync returns at once
+ * with a future of the acknowledgement, with at most maxInFlight
+ * messages unacknowledged; produceBatch publishes many messages that way
+ * and waits for all of them.  produceNonblocking queues a message for a
+ * background thread that publishes in batches, spilling to disk while
+ * the broker is unreachable if a spill directory is set.
  */
 public class MemphisProducer {
-    private static final String STATION_SUFFIX = ".final";
+    private static final long QUEUE_WAIT_MS = 100;
 
     private final JetStream jetStreamContext;
-    private final String stationName;
-    private final String connectionId;
-    private final String producerName;
-    private final PartitionIterator partIter;
-    private final ConcurrentLinkedQueue<NatsMessage> msgQueue;
+    private final MessageTemplate template;
+    private final Partitioner partitioner;
+    private final MpscRingBuffer<NatsMessage> msgQueue;
     private final ProducerRunnable backgroundProducer;
     private final Thread backgroundProducerThread;
-    private final int queueSize;
+    private final ProducerOptions.BackpressureMode backpressureMode;
+    private final InFlightWindow inFlightWindow;
+    private final SpillLog spillLog;
+    private final boolean adaptiveFlowControl;
+    private final int maxInFlight;
+    private final Map<String, AimdWindow> partitionWindows = new ConcurrentHashMap<>();
+    private final PartitionsUpdateSubscriber partitionsUpdates;
+    private final String stationName;
+    private final Consumer<List<Integer>> partitionsListener = this::updatePartitions;
 
-    private static class PartitionIterator implements Iterator<Integer> {
-        private final List<Integer> partitions;
-        private int nextIdx;
+    public MemphisProducer(Connection connection, String connectionId, ProducerOptions producerOptions, List<Integer> partitions,
+                           PartitionsUpdateSubscriber partitionsUpdates) throws MemphisConnectException {
+        try {
+            this.jetStreamContext = connection.jetStream();
+        } catch(IOException e) {
+            throw new MemphisConnectException(e.getMessage());
+        }
+        String producerName = producerOptions.producerName.toLowerCase();
+        this.template = new MessageTemplate(producerOptions.stationName, connectionId, producerName, partitions,
+                producerOptions.compressionCodec, producerOptions.compressionThreshold);
+        this.partitioner = producerOptions.partitioner;
+        msgQueue = new MpscRingBuffer<>(producerOptions.queueSize);
+        this.backpressureMode = producerOptions.backpressureMode;
+        this.inFlightWindow = new InFlightWindow(producerOptions.maxInFlight, producerOptions.backpressureMode);
+        this.adaptiveFlowControl = producerOptions.adaptiveFlowControl;
+        this.maxInFlight = producerOptions.maxInFlight;
 
-        public PartitionIterator(List<Integer> partitions) {
-            this.partitions = partitions;
-            nextIdx = 0;
+        if(producerOptions.spillDirectory != null) {
+            try {
+                this.spillLog = new SpillLog(Paths.get(producerOptions.spillDirectory, producerName),
+                        producerOptions.spillSegmentBytes, producerOptions.maxSpillBytes);
+            } catch(IOException e) {
+                throw new MemphisConnectException("Error opening the spill log: " + e.getMessage());
+            }
+        } else {
+            this.spillLog = null;
         }
 
+        backgroundProducer = new ProducerRunnable(this.jetStreamContext, connection, msgQueue, template, spillLog, producerOptions);
+        backgroundProducerThread = new Thread(backgroundProducer, "memphis-producer-" + producerName);
+        backgroundProducerThread.setDaemon(true);
+        backgroundProducerThread.start();
 
-        @Override
-        public boolean hasNext() {
-            return true;
-        }
+        this.partitionsUpdates = partitionsUpdates;
+        this.stationName = producerOptions.stationName;
+        partitionsUpdates.subscribe(stationName, partitionsListener);
+    }
 
-        @Override
-        public Integer next() {
-            int nextPart = partitions.get(nextIdx);
-            nextIdx = (nextIdx + 1) % partitions.size();
-            return nextPart;
-        }
+    /**
+     * Send message to the station synchronously.
+     * @param msg A byte array constituting the body of the message.
+     * @return PublishAck object providing information about success or failure
+     * @throws MemphisException if a problem is encountered.
+     */
+    public PublishAck produce(byte[] msg) throws MemphisException {
+        return produce(null, msg);
+    }
+
+    /**
+     * Send message to the station synchronously.  The key is passed to the
+     * producer's Partitioner to choose the partition; with a
+     * KeyHashPartitioner, messages with equal keys keep their order.
+     * @param key A byte array identifying the message for partitioning, or null.
+     * @param msg A byte array constituting the body of the message.
+     * @return PublishAck object providing information about success or failure
+     * @throws MemphisException if a problem is encountered.
+     */
+    public PublishAck produce(byte[] key, byte[] msg) throws MemphisException {
+        return produce(template.build(choosePartition(key, msg.length), msg));
     }
 
     /**
-     * Runs as a background thread that sends messages in the queue.
-     * Used to implement non-blocking sending.
+     * Send a slice of an array to the station synchronously.  The slice is
+     * copied at most once, as the connection only accepts whole arrays.
+     * @param msg An array holding the body of the message.
+     * @param offset Index of the first byte of the body.
+     * @param length Number of bytes in the body.
+     * @return PublishAck object providing information about success or failure
+     * @throws MemphisException if a problem is encountered.
      */
-    private static class ProducerRunnable implements Runnable {
-        private final JetStream jetStreamContext;
-        private volatile boolean canceled = false;
-        private final ConcurrentLinkedQueue<NatsMessage> msgQueue;
-        private volatile boolean hasError = false;
-        private String errorMsg = "";
+    public PublishAck produce(byte[] msg, int offset, int length) throws MemphisException {
+        checkSlice(msg, offset, length);
+        return produce(template.build(choosePartition(null, length), msg, offset, length));
+    }
 
-        public ProducerRunnable(JetStream jetStreamContext, ConcurrentLinkedQueue<NatsMessage> msgQueue) {
-            this.jetStreamContext = jetStreamContext;
-            this.msgQueue = msgQueue;
+    /**
+     * Send the remaining bytes of a buffer to the station synchronously.
+     * The buffer's position is left unchanged, so it can be reused once
+     * this call returns.
+     * @param msg A buffer holding the body of the message.
+     * @return PublishAck object providing information about success or failure
+     * @throws MemphisException if a problem is encountered.
+     */
+    public PublishAck produce(ByteBuffer msg) throws MemphisException {
+        return produce(null, msg);
+    }
+
+    /**
+     * Send the remaining bytes of a buffer to the station synchronously,
+     * using the key to choose the partition.
+     * @param key A byte array identifying the message for partitioning, or null.
+     * @param msg A buffer holding the body of the message.
+     * @return PublishAck object providing information about success or failure
+     * @throws MemphisException if a problem is encountered.
+     * @see #produce(ByteBuffer)
+     */
+    public PublishAck produce(byte[] key, ByteBuffer msg) throws MemphisException {
+        return produce(template.build(choosePartition(key, msg.remaining()), msg));
+    }
+
+    private PublishAck produce(NatsMessage natsMsg) throws MemphisException {
+        try {
+            return jetStreamContext.publish(natsMsg);
+        } catch(Exception e) {
+            throw new MemphisException("Error occurred while connecting to Memphis: " + e.getMessage());
         }
+    }
 
-        @Override
-        public void run() {
-            while(!canceled) {
-                if(msgQueue.isEmpty()) {
-                    try{
-                        this.wait(100);
-                    } catch(InterruptedException e) {
-                        // ignore exception
-                    }
-                } else {
-                    NatsMessage msg = msgQueue.peek();
+    /**
+     * Send message to the station without waiting for the acknowledgement.
+     * At most ProducerOptions.maxInFlight messages may await acknowledgement
+     * at once.  When that limit is reached, this call blocks or throws
+     * depending on ProducerOptions.backpressureMode.
+     * @param msg A byte array constituting the body of the message.
+     * @return a future completed with the PublishAck, or exceptionally with a MemphisException
+     * @throws MemphisException if the message could not be handed to the connection.
+     */
+    public CompletableFuture<PublishAck> produceAsync(byte[] msg) throws MemphisException {
+        return produceAsync(null, msg);
+    }
 
-                    try {
-                        PublishAck ack = jetStreamContext.publish(msg);
-                        msgQueue.poll();
-                    } catch(Exception e) {
-                        errorMsg = "Error occurred while connecting to Memphis: " + e.getMessage();
-                        canceled = true;
-                        hasError = true;
-                    }
-                }
+    /**
+     * Send message to the station without waiting for the acknowledgement,
+     * using the key to choose the partition.
+     * @param key A byte array identifying the message for partitioning, or null.
+     * @param msg A byte array constituting the body of the message.
+     * @return a future completed with the PublishAck, or exceptionally with a MemphisException
+     * @throws MemphisException if the message could not be handed to the connection.
+     * @see #produceAsync(byte[])
+     */
+    public CompletableFuture<PublishAck> produceAsync(byte[] key, byte[] msg) throws MemphisException {
+        return produceAsync(template.build(choosePartition(key, msg.length), msg));
+    }
+
+    /**
+     * Send a slice of an array to the station without waiting for the
+     * acknowledgement.  A slice covering the whole array is sent without
+     * copying, so the array must not change until the future completes.
+     * @param msg An array holding the body of the message.
+     * @param offset Index of the first byte of the body.
+     * @param length Number of bytes in the body.
+     * @return a future completed with the PublishAck, or exceptionally with a MemphisException
+     * @throws MemphisException if the message could not be handed to the connection.
+     * @see #produceAsync(byte[])
+     */
+    public CompletableFuture<PublishAck> produceAsync(byte[] msg, int offset, int length) throws MemphisException {
+        checkSlice(msg, offset, length);
+        return produceAsync(template.build(choosePartition(null, length), msg, offset, length));
+    }
+
+    /**
+     * Send the remaining bytes of a buffer to the station without waiting
+     * for the acknowledgement.  A heap buffer covering its whole backing
+     * array is sent without copying, so its contents must not change until
+     * the future completes.
+     * @param msg A buffer holding the body of the message.
+     * @return a future completed with the PublishAck, or exceptionally with a MemphisException
+     * @throws MemphisException if the message could not be handed to the connection.
+     * @see #produceAsync(byte[])
+     */
+    public CompletableFuture<PublishAck> produceAsync(ByteBuffer msg) throws MemphisException {
+        return produceAsync(null, msg);
+    }
+
+    /**
+     * Send the remaining bytes of a buffer to the station without waiting
+     * for the acknowledgement, using the key to choose the partition.
+     * @param key A byte array identifying the message for partitioning, or null.
+     * @param msg A buffer holding the body of the message.
+     * @return a future completed with the PublishAck, or exceptionally with a MemphisException
+     * @throws MemphisException if the message could not be handed to the connection.
+     * @see #produceAsync(ByteBuffer)
+     */
+    public CompletableFuture<PublishAck> produceAsync(byte[] key, ByteBuffer msg) throws MemphisException {
+        return produceAsync(template.build(choosePartition(key, msg.remaining()), msg));
+    }
+
+    private CompletableFuture<PublishAck> produceAsync(NatsMessage natsMsg) throws MemphisException {
+        return produceAsync(natsMsg, false);
+    }
+
+    /**
+     * Publishes a message once both its partition's window and the
+     * producer-wide maxInFlight limit have room.
+     * @param wait block for room whatever the backpressure mode
+     */
+    private CompletableFuture<PublishAck> produceAsync(NatsMessage natsMsg, boolean wait) throws MemphisException {
+        AimdWindow window = windowFor(natsMsg.getSubject());
+        long acquiredAt = window.acquire(wait);
+        try {
+            if(wait) {
+                inFlightWindow.acquireWaiting();
+            } else {
+                inFlightWindow.acquire();
             }
+        } catch(MemphisException e) {
+            window.cancel();
+            throw e;
         }
 
-        public void cancel() {
-            this.canceled = true;
+        CompletableFuture<PublishAck> publishFuture;
+        try {
+            publishFuture = jetStreamContext.publishAsync(natsMsg);
+        } catch(Exception e) {
+            inFlightWindow.release();
+            window.release(acquiredAt, false);
+            throw new MemphisException("Error occurred while connecting to Memphis: " + e.getMessage());
         }
 
-        public boolean isCanceled() {
-            return canceled;
-        }
+        CompletableFuture<PublishAck> ackFuture = new CompletableFuture<>();
+        publishFuture.whenComplete((ack, e) -> {
+            inFlightWindow.release();
+            window.release(acquiredAt, e == null);
+            if(e == null) {
+                ackFuture.complete(ack);
+            } else {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                ackFuture.completeExceptionally(new MemphisException("Error occurred while connecting to Memphis: " + cause.getMessage()));
+            }
+        });
 
-        public boolean hasError() {
-            return hasError;
-        }
+        return ackFuture;
+    }
 
-        public String getErrorMsg() {
-            return errorMsg;
-        }
+    /**
+     * Send a list of messages to the station and wait for all of them to be
+     * acknowledged.  Messages are published asynchronously across the
+     * producer's partitions, with at most ProducerOptions.maxInFlight of
+     * them awaiting acknowledgement at once; the call waits for room
+     * whatever the backpressure mode.  A failed message does not stop the
+     * rest of the batch.
+     * @param msgs The bodies of the messages.
+     * @return the acknowledgement or error of every message
+     * @throws MemphisException if interrupted while waiting.
+     */
+    public ProduceBatchResult produceBatch(List<byte[]> msgs) throws MemphisException {
+        return produceBatch(msgs.iterator());
     }
 
-    public MemphisProducer(Connection connection, String connectionId, ProducerOptions producerOptions, List<Integer> partitions) throws MemphisConnectException {
-        try {
-            this.jetStreamContext = connection.jetStream();
-        } catch(IOException e) {
-            throw new MemphisConnectException(e.getMessage());
+    /**
+     * Send a stream of messages to the station and wait for all of them to
+     * be acknowledged.  The stream is consumed as acknowledgements free up
+     * room, so it does not have to fit in memory; only the result does.
+     * @param msgs The bodies of the messages.
+     * @return the acknowledgement or error of every message
+     * @throws MemphisException if interrupted while waiting.
+     * @see #produceBatch(List)
+     */
+    public ProduceBatchResult produceBatch(Stream<byte[]> msgs) throws MemphisException {
+        return produceBatch(msgs.iterator());
+    }
+
+    private ProduceBatchResult produceBatch(Iterator<byte[]> msgs) throws MemphisException {
+        List<CompletableFuture<PublishAck>> futures = new ArrayList<>();
+        List<Integer> msgPartitions = new ArrayList<>();
+        while(msgs.hasNext()) {
+            byte[] msg = msgs.next();
+            CompletableFuture<PublishAck> future;
+            String subject = null;
+            try {
+                subject = choosePartition(null, msg.length);
+                future = produceAsync(template.build(subject, msg), true);
+            } catch(MemphisException e) {
+                if(Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                future = CompletableFuture.failedFuture(e);
+            }
+            futures.add(future);
+            msgPartitions.add(subject != null ? MessageTemplate.partitionOf(subject) : null);
         }
-        this.stationName = producerOptions.stationName;
-        this.connectionId = connectionId;
-        this.producerName = producerOptions.producerName.toLowerCase();
-        partIter = new PartitionIterator(partitions);
-        msgQueue = new ConcurrentLinkedQueue<>();
-        this.queueSize = producerOptions.queueSize;
 
-        // It probably isn't safe to let two threads use the same
-        // JetStream object...
-        backgroundProducer = new ProducerRunnable(this.jetStreamContext, msgQueue);
-        backgroundProducerThread = new Thread(backgroundProducer);
+        List<PublishAck> acks = new ArrayList<>(futures.size());
+        Map<Integer, MemphisException> failures = new TreeMap<>();
+        for(int i = 0; i < futures.size(); i++) {
+            try {
+                acks.add(futures.get(i).get());
+            } catch(ExecutionException e) {
+                acks.add(null);
+                failures.put(i, (MemphisException) e.getCause());
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MemphisException("Interrupted while waiting for acknowledgements.");
+            }
+        }
+
+        return new ProduceBatchResult(acks, failures, msgPartitions);
     }
 
     /**
-     * Send message to the station synchronously.
-     * @param msg A byte array constituting the body of the message.
-     * @return PublishAck object providing information about success or failure
-     * @throws MemphisException if a problem is encountered.
+     * @return the number of asynchronously produced messages still awaiting acknowledgement
      */
-    public PublishAck produce(byte[] msg) throws MemphisException {
-        var headers = new Headers();
-        headers.put("$memphis_connectionId", connectionId);
-        headers.put("$memphis_producedBy", producerName);
+    public int getInFlightCount() {
+        return inFlightWindow.inFlight();
+    }
+
+    /**
+     * Returns the flow control state of every partition: the number of
+     * asynchronous publishes allowed in flight and the measured ack
+     * round-trip times.  The window only changes when
+     * ProducerOptions.adaptiveFlowControl is enabled.
+     * @return a snapshot per partition, in partition order
+     */
+    public List<PartitionFlowStats> getFlowStats() {
+        String[] subjects = template.subjects();
+        List<PartitionFlowStats> stats = new ArrayList<>(subjects.length);
+        for(String subject : subjects) {
+            AimdWindow window = windowFor(subject);
+            stats.add(new PartitionFlowStats(MessageTemplate.partitionOf(subject), window.window(), window.inFlight(),
+                    window.smoothedRttMillis(), window.minRttMillis()));
+        }
+        return stats;
+    }
 
-        int partNum = partIter.next();
-        String partitionName = stationName + "$" + partNum + STATION_SUFFIX;
+    /**
+     * @return the number of partitions that have a flow control window
+     */
+    int windowCount() {
+        return partitionWindows.size();
+    }
 
-        var natsMsg = NatsMessage.builder()
-                .subject(partitionName)
-                .data(msg)
-                .headers(headers)
-                .build();
+    /**
+     * Switches the producer to a new partition list, as sent by the broker
+     * when the station's partitions change.  Messages already built keep
+     * the partition chosen for them; every message built afterwards is
+     * routed over the new partitions.
+     * @param partitions the station's partitions
+     */
+    public void updatePartitions(List<Integer> partitions) {
+        template.setPartitions(partitions);
+        List<String> subjects = List.of(template.subjects());
+        partitionWindows.keySet().retainAll(subjects);
+    }
 
-        PublishAck ack = null;
-        try {
-            ack = jetStreamContext.publish(natsMsg);
-        } catch(Exception e) {
-            throw new MemphisException("Error occurred while connecting to Memphis: " + e.getMessage());
+    /**
+     * Returns the window of a partition.  A message built before its
+     * partition was removed gets a window of its own, so that in-flight
+     * publishes do not bring back the windows updatePartitions pruned.
+     */
+    private AimdWindow windowFor(String subject) {
+        AimdWindow window = partitionWindows.get(subject);
+        if(window != null) {
+            return window;
+        }
+        if(!template.hasSubject(subject)) {
+            return newWindow(subject);
         }
+        window = partitionWindows.computeIfAbsent(subject, this::newWindow);
+        if(!template.hasSubject(subject)) {
+            // the partition was removed while the window was being added
+            partitionWindows.remove(subject, window);
+        }
+        return window;
+    }
 
-        return ack;
+    private AimdWindow newWindow(String subject) {
+        return new AimdWindow(adaptiveFlowControl, maxInFlight, backpressureMode);
     }
 
     /**
      * Adds message to an internal queue to be sent by a background thread.
-     * If the queue is full, this call blocks.
+     * If the queue is full, the message is written to the spill log when
+     * ProducerOptions.spillDirectory is set; otherwise, or if the spill log
+     * is full too, this call blocks or throws depending on
+     * ProducerOptions.backpressureMode.
      * @param msg A byte array constituting the body of the message.
      * @throws MemphisException if a problem is encountered.
      */
     public void produceNonblocking(byte[] msg) throws MemphisException {
-        var headers = new Headers();
-        headers.put("$memphis_connectionId", connectionId);
-        headers.put("$memphis_producedBy", producerName);
-
-        int partNum = partIter.next();
-        String partitionName = stationName + "$" + partNum + STATION_SUFFIX;
-
-        var natsMsg = NatsMessage.builder()
-                .subject(partitionName)
-                .data(msg)
-                .headers(headers)
-                .build();
-
-        // let the queue drain to half of its maximum size
-        if (msgQueue.size() >= queueSize) {
-            while(msgQueue.size() >= queueSize / 2) {
-                try {
-                    this.wait(100);
-                } catch (InterruptedException e) {
-                    // ignore exception
+        produceNonblocking(null, msg);
+    }
+
+    /**
+     * Adds message to an internal queue to be sent by a background thread,
+     * using the key to choose the partition.
+     * @param key A byte array identifying the message for partitioning, or null.
+     * @param msg A byte array constituting the body of the message.
+     * @throws MemphisException if a problem is encountered.
+     * @see #produceNonblocking(byte[])
+     */
+    public void produceNonblocking(byte[] key, byte[] msg) throws MemphisException {
+        checkBackgroundProducer();
+        enqueue(template.build(choosePartition(key, msg.length), msg));
+    }
+
+    /**
+     * Adds a slice of an array to an internal queue to be sent by a
+     * background thread.  A slice covering the whole array is queued
+     * without copying, so the array must not change until it is sent.
+     * @param msg An array holding the body of the message.
+     * @param offset Index of the first byte of the body.
+     * @param length Number of bytes in the body.
+     * @throws MemphisException if a problem is encountered.
+     * @see #produceNonblocking(byte[])
+     */
+    public void produceNonblocking(byte[] msg, int offset, int length) throws MemphisException {
+        checkSlice(msg, offset, length);
+        checkBackgroundProducer();
+        enqueue(template.build(choosePartition(null, length), msg, offset, length));
+    }
+
+    /**
+     * Adds the remaining bytes of a buffer to an internal queue to be sent
+     * by a background thread.  A heap buffer covering its whole backing
+     * array is queued without copying, so its contents must not change
+     * until it is sent; other buffers are copied once.  The buffer's
+     * position is left unchanged.
+     * @param msg A buffer holding the body of the message.
+     * @throws MemphisException if a problem is encountered.
+     * @see #produceNonblocking(byte[])
+     */
+    public void produceNonblocking(ByteBuffer msg) throws MemphisException {
+        produceNonblocking(null, msg);
+    }
+
+    /**
+     * Adds the remaining bytes of a buffer to an internal queue to be sent
+     * by a background thread, using the key to choose the partition.
+     * @param key A byte array identifying the message for partitioning, or null.
+     * @param msg A buffer holding the body of the message.
+     * @throws MemphisException if a problem is encountered.
+     * @see #produceNonblocking(ByteBuffer)
+     */
+    public void produceNonblocking(byte[] key, ByteBuffer msg) throws MemphisException {
+        checkBackgroundProducer();
+        enqueue(template.build(choosePartition(key, msg.remaining()), msg));
+    }
+
+    private void enqueue(NatsMessage natsMsg) throws MemphisException {
+        while(!msgQueue.offer(natsMsg)) {
+            if(spill(natsMsg)) {
+                break;
+            }
+
+            if(backpressureMode == ProducerOptions.BackpressureMode.FAIL_FAST) {
+                throw new MemphisException("The producer queue is full (capacity " + msgQueue.capacity() + ").");
+            }
+
+            try {
+                if(msgQueue.offer(natsMsg, QUEUE_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                    break;
                 }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MemphisException("Interrupted while waiting for room in the producer queue.");
             }
+            checkBackgroundProducer();
+        }
+    }
+
+    private boolean spill(NatsMessage natsMsg) throws MemphisException {
+        if(spillLog == null) {
+            return false;
+        }
+        try {
+            return backgroundProducer.spillFromProducer(natsMsg);
+        } catch(IOException e) {
+            throw new MemphisException("Error writing to the spill log: " + e.getMessage());
+        }
+    }
+
+    private static void checkSlice(byte[] msg, int offset, int length) throws MemphisException {
+        if(offset < 0 || length < 0 || offset > msg.length - length) {
+            throw new MemphisException("Slice [" + offset + ", " + offset + " + " + length + ") is out of bounds for a message of " + msg.length + " bytes.");
         }
+    }
+
+    /**
+     * @return the subject of the partition chosen by the partitioner
+     */
+    private String choosePartition(byte[] key, int payloadSize) throws MemphisException {
+        String[] subjects = template.subjects();
+        int partitionIdx = partitioner.partition(key, payloadSize, subjects.length);
+        if(partitionIdx < 0 || partitionIdx >= subjects.length) {
+            throw new MemphisException("Partitioner returned partition index " + partitionIdx + " for " + subjects.length + " partitions.");
+        }
+        return subjects[partitionIdx];
+    }
 
-        msgQueue.add(natsMsg);
+    private void checkBackgroundProducer() throws MemphisException {
+        if(backgroundProducer.hasError()) {
+            throw new MemphisException(backgroundProducer.getErrorMsg());
+        }
+        if(backgroundProducer.isCanceled()) {
+            throw new MemphisException("The producer has been stopped.");
+        }
     }
 
+    /**
+     * Stops the producer.  Messages already queued by produceNonblocking
+     * are sent before this call returns, or kept in the spill log for the
+     * next producer with the same name if the connection is down.
+     */
     public void stop() {
+        partitionsUpdates.unsubscribe(stationName, partitionsListener);
         this.backgroundProducer.cancel();
         try {
             this.backgroundProducerThread.join();
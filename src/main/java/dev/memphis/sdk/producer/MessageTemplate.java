@@ -0,0 +1,238 @@
+package dev.memphis.sdk.producer;
+
+import dev.memphis.sdk.MemphisException;
+import dev.memphis.sdk.compression.CompressionCodec;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds what all messages of a producer have in common: the subject of
+ * every partition and the headers identifying the producer.  Both are
+ * computed once instead of for every message.  The subjects are replaced
+ * as a whole when the station's partitions change.
+ *
+ * When the producer compresses payloads, a second header block that also
+ * carries $memphis_compression is kept for compressed messages.  Header
+ * instances are shared by every message, so they are read-only: changing
+ * the headers of a built message throws UnsupportedOperationException.
+ */
+class MessageTemplate {
+    private static final String STATION_SUFFIX = ".final";
+
+    private final String stationName;
+    private volatile String[] subjects;
+    private final Headers headers;
+    private final CompressionCodec codec;
+    private final int compressionThreshold;
+    private final Headers compressedHeaders;
+
+    public MessageTemplate(String stationName, String connectionId, String producerName, List<Integer> partitions) {
+        this(stationName, connectionId, producerName, partitions, null, 0);
+    }
+
+    public MessageTemplate(String stationName, String connectionId, String producerName, List<Integer> partitions,
+                           CompressionCodec codec, int compressionThreshold) {
+        this.stationName = stationName;
+        setPartitions(partitions);
+
+        Headers producerHeaders = new Headers();
+        producerHeaders.put("$memphis_connectionId", connectionId);
+        producerHeaders.put("$memphis_producedBy", producerName);
+        this.headers = new ReadOnlyHeaders(producerHeaders);
+
+        this.codec = codec;
+        this.compressionThreshold = compressionThreshold;
+        if(codec != null) {
+            producerHeaders.put(CompressionCodec.HEADER, codec.name());
+            compressedHeaders = new ReadOnlyHeaders(producerHeaders);
+        } else {
+            compressedHeaders = headers;
+        }
+    }
+
+    /**
+     * Replaces the partitions messages are routed to.
+     */
+    public void setPartitions(List<Integer> partitions) {
+        String[] updated = new String[partitions.size()];
+        for(int i = 0; i < updated.length; i++) {
+            updated[i] = stationName + "$" + partitions.get(i) + STATION_SUFFIX;
+        }
+        subjects = updated;
+    }
+
+    /**
+     * Returns the subject of every partition, in partition list order.
+     * The array is shared and must not be modified; it is replaced, not
+     * changed, when the partitions change.
+     */
+    public String[] subjects() {
+        return subjects;
+    }
+
+    /**
+     * @return whether messages are currently routed to the subject
+     */
+    public boolean hasSubject(String subject) {
+        for(String current : subjects) {
+            if(current.equals(subject)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param partitionIdx index into the producer's partition list
+     * @return the subject messages for that partition are published to
+     */
+    public String subject(int partitionIdx) {
+        return subjects[partitionIdx];
+    }
+
+    /**
+     * @return the partition number a subject built by this template belongs to
+     */
+    public static int partitionOf(String subject) {
+        int start = subject.lastIndexOf('$');
+        return Integer.parseInt(subject, start + 1, subject.length() - STATION_SUFFIX.length(), 10);
+    }
+
+    /**
+     * Builds a message for the partition subject around the payload,
+     * compressing it if configured but otherwise without copying it.
+     * @throws MemphisException if the codec fails
+     */
+    public NatsMessage build(String subject, byte[] data) throws MemphisException {
+        return build(subject, data, 0, data.length);
+    }
+
+    /**
+     * Builds a message from a slice of an array.  The slice is copied
+     * once, unless it is compressed or covers the whole array, since the
+     * connection only accepts exact arrays.
+     * @throws MemphisException if the codec fails
+     */
+    public NatsMessage build(String subject, byte[] data, int offset, int length) throws MemphisException {
+        byte[] compressed = compress(data, offset, length);
+        if(compressed != null) {
+            return new NatsMessage(subject, null, compressedHeaders, compressed);
+        }
+
+        byte[] payload = offset == 0 && length == data.length ? data : Arrays.copyOfRange(data, offset, offset + length);
+        return new NatsMessage(subject, null, headers, payload);
+    }
+
+    /**
+     * Builds a message from the remaining bytes of a buffer without
+     * changing its position.  Heap buffers are read in place; direct
+     * buffers are copied once.
+     * @throws MemphisException if the codec fails
+     */
+    public NatsMessage build(String subject, ByteBuffer data) throws MemphisException {
+        if(data.hasArray()) {
+            return build(subject, data.array(), data.arrayOffset() + data.position(), data.remaining());
+        }
+
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return build(subject, bytes);
+    }
+
+    /**
+     * Compresses the slice if the producer has a codec and the slice
+     * reaches the threshold.  Compressed output that is not smaller than
+     * the input is discarded.
+     * @return the compressed payload, or null if it should be sent as is
+     * @throws MemphisException if the codec fails
+     */
+    private byte[] compress(byte[] data, int offset, int length) throws MemphisException {
+        if(codec == null || length < compressionThreshold) {
+            return null;
+        }
+
+        byte[] compressed;
+        try {
+            compressed = codec.compress(data, offset, length);
+        } catch(IOException e) {
+            throw new MemphisException("Error compressing message: " + e.getMessage());
+        }
+        return compressed.length < length ? compressed : null;
+    }
+
+    /**
+     * Rebuilds a message read back from the spill log, with the
+     * compression header of the codec the record was written with, which
+     * may not be this producer's.
+     */
+    public NatsMessage build(SpillLog.Record record) {
+        Headers recordHeaders = headers;
+        if(record.codec != null) {
+            if(codec != null && record.codec.equals(codec.name())) {
+                recordHeaders = compressedHeaders;
+            } else {
+                recordHeaders = new Headers(headers);
+                recordHeaders.put(CompressionCodec.HEADER, record.codec);
+            }
+        }
+        return new NatsMessage(record.subject, null, recordHeaders, record.payload);
+    }
+
+    /**
+     * Headers that reject every change once copied.  Reading them, and
+     * copying them as the JetStream client does when publishing, works
+     * as for any headers.
+     */
+    private static class ReadOnlyHeaders extends Headers {
+        private ReadOnlyHeaders(Headers headers) {
+            super(headers);
+        }
+
+        @Override
+        public Headers add(String key, String... values) {
+            throw new UnsupportedOperationException("Producer headers are read-only.");
+        }
+
+        @Override
+        public Headers add(String key, Collection<String> values) {
+            throw new UnsupportedOperationException("Producer headers are read-only.");
+        }
+
+        @Override
+        public Headers put(String key, String... values) {
+            throw new UnsupportedOperationException("Producer headers are read-only.");
+        }
+
+        @Override
+        public Headers put(String key, Collection<String> values) {
+            throw new UnsupportedOperationException("Producer headers are read-only.");
+        }
+
+        @Override
+        public Headers put(Map<String, List<String>> map) {
+            throw new UnsupportedOperationException("Producer headers are read-only.");
+        }
+
+        @Override
+        public void remove(String... keys) {
+            throw new UnsupportedOperationException("Producer headers are read-only.");
+        }
+
+        @Override
+        public void remove(Collection<String> keys) {
+            throw new UnsupportedOperationException("Producer headers are read-only.");
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Producer headers are read-only.");
+        }
+    }
+}
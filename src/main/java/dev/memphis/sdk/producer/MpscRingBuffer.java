@@ -0,0 +1,193 @@
+package dev.memphis.sdk.producer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, preallocated, lock-free queue for many producer threads
+ * and a single consumer thread.
+ *
+ * Every slot carries a sequence number that tells whether it is free
+ * for the lap a producer is on or holds an element for the consumer.
+ * Producers claim positions with a CAS on the tail; the consumer owns
+ * the head and never contends with anyone.  Both offer and poll are O(1)
+ * and do not allocate.
+ *
+ * Only one thread at a time may call the poll and await methods; a
+ * thread taking over from the consumer must synchronize with it.
+ */
+class MpscRingBuffer<E> {
+    private static final int SPIN_TRIES = 100;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private volatile Thread parkedConsumer;
+
+    /**
+     * @param minCapacity requested capacity, rounded up to the next power of two
+     */
+    public MpscRingBuffer(int minCapacity) {
+        int capacity = 1;
+        while(capacity < minCapacity && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        slots = new Object[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for(int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Inserts an element if there is room.
+     * @return false if the buffer is full
+     */
+    public boolean offer(E e) {
+        long pos = tail.get();
+        while(true) {
+            int idx = (int) pos & mask;
+            long diff = sequences.get(idx) - pos;
+            if(diff == 0) {
+                if(tail.compareAndSet(pos, pos + 1)) {
+                    slots[idx] = e;
+                    sequences.set(idx, pos + 1);
+                    Thread consumer = parkedConsumer;
+                    if(consumer != null) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return true;
+                }
+                pos = tail.get();
+            } else if(diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Inserts an element, spinning and then parking with a growing
+     * backoff while the buffer is full.
+     * @return false if the timeout elapsed before room was available
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long parkNanos = 1000;
+        int tries = 0;
+        while(!offer(e)) {
+            if(Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0) {
+                return false;
+            }
+            if(tries++ < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(this, Math.min(parkNanos, remaining));
+                parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the oldest element.  Consumer thread only.
+     * @return the element, or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long pos = head;
+        int idx = (int) pos & mask;
+        if(sequences.get(idx) != pos + 1) {
+            return null;
+        }
+        E e = (E) slots[idx];
+        slots[idx] = null;
+        sequences.set(idx, pos + slots.length);
+        head = pos + 1;
+        return e;
+    }
+
+    /**
+     * Removes the oldest element, parking until one is offered or
+     * the timeout elapses.  Consumer thread only.
+     * @return the element, or null if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(timeout, unit) ? poll() : null;
+    }
+
+    /**
+     * Parks until an element is available or the timeout elapses, without
+     * removing it.  Consumer thread only.
+     * @return true if an element is available
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        if(hasElement()) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            parkedConsumer = Thread.currentThread();
+            while(true) {
+                if(hasElement()) {
+                    return true;
+                }
+                long remaining = deadline - System.nanoTime();
+                if(remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            parkedConsumer = null;
+        }
+    }
+
+    /**
+     * @return true if the element at the head has been fully offered
+     */
+    private boolean hasElement() {
+        long pos = head;
+        return sequences.get((int) pos & mask) == pos + 1;
+    }
+
+    /**
+     * Wakes the consumer if it is parked in poll.
+     */
+    public void wakeConsumer() {
+        Thread consumer = parkedConsumer;
+        if(consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,26 @@
+package dev.memphis.sdk.producer;
+
+/**
+ * Snapshot of a producer's flow control state for one partition.
+ */
+public class PartitionFlowStats {
+    public final int partition;
+    public final int window;
+    public final int inFlight;
+    public final double smoothedRttMillis;
+    public final double minRttMillis;
+
+    PartitionFlowStats(int partition, int window, int inFlight, double smoothedRttMillis, double minRttMillis) {
+        this.partition = partition;
+        this.window = window;
+        this.inFlight = inFlight;
+        this.smoothedRttMillis = smoothedRttMillis;
+        this.minRttMillis = minRttMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("partition %d: window %d, in flight %d, rtt %.2f ms (min %.2f ms)",
+                partition, window, inFlight, smoothedRttMillis, minRttMillis);
+    }
+}
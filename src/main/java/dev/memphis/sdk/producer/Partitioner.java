@@ -0,0 +1,17 @@
+package dev.memphis.sdk.producer;
+
+/**
+ * Chooses the partition each produced message is sent to.
+ *
+ * Implementations are called concurrently from every thread that
+ * produces with the producer and must be thread-safe.
+ */
+public interface Partitioner {
+    /**
+     * @param key the message key passed to produce, or null if none was given
+     * @param payloadSize size of the message body in bytes
+     * @param numPartitions number of partitions of the station
+     * @return index of the partition to use, between 0 and numPartitions - 1
+     */
+    int partition(byte[] key, int payloadSize, int numPartitions);
+}
@@ -0,0 +1,83 @@
+package dev.memphis.sdk.producer;
+
+import dev.memphis.sdk.MemphisException;
+import io.nats.client.api.PublishAck;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of MemphisProducer.produceBatch.  Messages are identified by
+ * their position in the batch; each one has either an acknowledgement
+ * or an error.
+ */
+public class ProduceBatchResult {
+    private final List<PublishAck> acks;
+    private final Map<Integer, MemphisException> failures;
+    private final Map<Integer, Long> firstSequences = new TreeMap<>();
+    private final Map<Integer, Long> lastSequences = new TreeMap<>();
+
+    ProduceBatchResult(List<PublishAck> acks, Map<Integer, MemphisException> failures, List<Integer> partitions) {
+        this.acks = Collections.unmodifiableList(acks);
+        this.failures = Collections.unmodifiableMap(failures);
+        for(int i = 0; i < acks.size(); i++) {
+            PublishAck ack = acks.get(i);
+            if(ack != null) {
+                firstSequences.merge(partitions.get(i), ack.getSeqno(), Math::min);
+                lastSequences.merge(partitions.get(i), ack.getSeqno(), Math::max);
+            }
+        }
+    }
+
+    /**
+     * @return the number of messages in the batch
+     */
+    public int size() {
+        return acks.size();
+    }
+
+    /**
+     * @return true if every message was acknowledged
+     */
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    public int getSuccessCount() {
+        return acks.size() - failures.size();
+    }
+
+    public int getFailureCount() {
+        return failures.size();
+    }
+
+    /**
+     * @return the acknowledgement of every message in batch order, with null for failed messages
+     */
+    public List<PublishAck> getAcks() {
+        return acks;
+    }
+
+    /**
+     * @return the error of every failed message, keyed by its position in the batch
+     */
+    public Map<Integer, MemphisException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the lowest stream sequence acknowledged in each partition, keyed by partition number
+     */
+    public Map<Integer, Long> getFirstSequences() {
+        return Collections.unmodifiableMap(firstSequences);
+    }
+
+    /**
+     * @return the highest stream sequence acknowledged in each partition, keyed by partition number
+     */
+    public Map<Integer, Long> getLastSequences() {
+        return Collections.unmodifiableMap(lastSequences);
+    }
+}
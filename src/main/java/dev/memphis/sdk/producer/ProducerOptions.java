@@ -1,6 +1,7 @@
 package dev.memphis.sdk.producer;
 
 import dev.memphis.sdk.MemphisException;
+import dev.memphis.sdk.compression.CompressionCodec;
 
 /**
  * Options used when creating producers.
@@ -9,11 +10,48 @@ public class ProducerOptions {
     public final String producerName;
     public final String stationName;
     public final int queueSize;
+    public final int maxInFlight;
+    public final BackpressureMode backpressureMode;
+    public final boolean adaptiveFlowControl;
+    public final int lingerMs;
+    public final int maxBatchBytes;
+    public final Partitioner partitioner;
+    public final CompressionCodec compressionCodec;
+    public final int compressionThreshold;
+    public final String spillDirectory;
+    public final int spillSegmentBytes;
+    public final long maxSpillBytes;
 
     private ProducerOptions(Builder b) {
         producerName = b.producerName;
         stationName = b.stationName;
         this.queueSize = b.queueSize;
+        this.maxInFlight = b.maxInFlight;
+        this.backpressureMode = b.backpressureMode;
+        this.adaptiveFlowControl = b.adaptiveFlowControl;
+        this.lingerMs = b.lingerMs;
+        this.maxBatchBytes = b.maxBatchBytes;
+        this.partitioner = b.partitioner;
+        this.compressionCodec = b.compressionCodec;
+        this.compressionThreshold = b.compressionThreshold;
+        this.spillDirectory = b.spillDirectory;
+        this.spillSegmentBytes = b.spillSegmentBytes;
+        this.maxSpillBytes = b.maxSpillBytes;
+    }
+
+    /**
+     * What a producer does when it cannot accept another message
+     * without exceeding its configured limits.
+     */
+    public enum BackpressureMode {
+        /**
+         * Block the calling thread until room frees up.
+         */
+        BLOCK,
+        /**
+         * Throw a MemphisException right away.
+         */
+        FAIL_FAST
     }
 
     /**
@@ -23,6 +61,17 @@ public class ProducerOptions {
         private String producerName;
         private String stationName;
         private int queueSize = 1000;
+        private int maxInFlight = 1000;
+        private BackpressureMode backpressureMode = BackpressureMode.BLOCK;
+        private boolean adaptiveFlowControl = false;
+        private int lingerMs = 0;
+        private int maxBatchBytes = 1024 * 1024;
+        private Partitioner partitioner;
+        private CompressionCodec compressionCodec = null;
+        private int compressionThreshold = 1024;
+        private String spillDirectory = null;
+        private int spillSegmentBytes = 64 * 1024 * 1024;
+        private long maxSpillBytes = 1024L * 1024 * 1024;
 
         public Builder producerName(String producerName) {
             this.producerName = producerName;
@@ -34,24 +83,161 @@ public class ProducerOptions {
             return this;
         }
 
+        /**
+         * @param numMessages capacity of the produceNonblocking queue, rounded up to a power of two, defaults to 1000
+         * @return the Builder object for chaining purpose
+         */
         public Builder queueSize(int numMessages) {
             this.queueSize = numMessages;
             return this;
         }
 
+        /**
+         * @param numMessages maximum number of asynchronous publishes awaiting acknowledgement, defaults to 1000
+         * @return the Builder object for chaining purpose
+         */
+        public Builder maxInFlight(int numMessages) {
+            this.maxInFlight = numMessages;
+            return this;
+        }
+
+        /**
+         * @param backpressureMode whether to block or fail when the producer is saturated, defaults to BLOCK
+         * @return the Builder object for chaining purpose
+         */
+        public Builder backpressureMode(BackpressureMode backpressureMode) {
+            this.backpressureMode = backpressureMode;
+            return this;
+        }
+
+        /**
+         * @param adaptiveFlowControl whether to size each partition's window of asynchronous publishes from the
+         *                            measured ack latency, up to maxInFlight, defaults to false
+         * @return the Builder object for chaining purpose
+         */
+        public Builder adaptiveFlowControl(boolean adaptiveFlowControl) {
+            this.adaptiveFlowControl = adaptiveFlowControl;
+            return this;
+        }
+
+        /**
+         * @param lingerMs how long produceNonblocking may hold a message while its partition's batch fills, defaults to 0
+         * @return the Builder object for chaining purpose
+         */
+        public Builder lingerMs(int lingerMs) {
+            this.lingerMs = lingerMs;
+            return this;
+        }
+
+        /**
+         * @param maxBatchBytes payload size at which a partition's batch is sent without waiting for lingerMs, defaults to 1 MiB
+         * @return the Builder object for chaining purpose
+         */
+        public Builder maxBatchBytes(int maxBatchBytes) {
+            this.maxBatchBytes = maxBatchBytes;
+            return this;
+        }
+
+        /**
+         * @param partitioner chooses the partition of each message, defaults to a RoundRobinPartitioner
+         * @return the Builder object for chaining purpose
+         */
+        public Builder partitioner(Partitioner partitioner) {
+            this.partitioner = partitioner;
+            return this;
+        }
+
+        /**
+         * @param codec codec used to compress payloads, for example a DeflateCodec; defaults to no compression
+         * @return the Builder object for chaining purpose
+         */
+        public Builder compression(CompressionCodec codec) {
+            this.compressionCodec = codec;
+            return this;
+        }
+
+        /**
+         * @param numBytes payloads smaller than this are sent uncompressed, defaults to 1024
+         * @return the Builder object for chaining purpose
+         */
+        public Builder compressionThreshold(int numBytes) {
+            this.compressionThreshold = numBytes;
+            return this;
+        }
+
+        /**
+         * @param directory where produceNonblocking spills messages while the broker is unreachable or the queue is full;
+         *                  each producer uses a subdirectory named after it, defaults to no spilling
+         * @return the Builder object for chaining purpose
+         */
+        public Builder spillDirectory(String directory) {
+            this.spillDirectory = directory;
+            return this;
+        }
+
+        /**
+         * @param numBytes size of each spill segment file, which bounds the size of a single message, defaults to 64 MiB
+         * @return the Builder object for chaining purpose
+         */
+        public Builder spillSegmentBytes(int numBytes) {
+            this.spillSegmentBytes = numBytes;
+            return this;
+        }
+
+        /**
+         * @param numBytes disk space the spill log may take up, defaults to 1 GiB
+         * @return the Builder object for chaining purpose
+         */
+        public Builder maxSpillBytes(long numBytes) {
+            this.maxSpillBytes = numBytes;
+            return this;
+        }
+
         public ProducerOptions build() throws MemphisException {
             if(stationName == null) {
                 throw new MemphisException("Station name must be set.");
             }
 
             if(producerName == null) {
-                throw new MemphisException("Consumer name must be set.");
+                throw new MemphisException("Producer name must be set.");
             }
 
             if(queueSize < 1) {
                 throw new MemphisException("The buffer must be able to hold at least one message.");
             }
 
+            if(maxInFlight < 1) {
+                throw new MemphisException("At least one message must be allowed in flight.");
+            }
+
+            if(backpressureMode == null) {
+                throw new MemphisException("Backpressure mode must be set.");
+            }
+
+            if(lingerMs < 0) {
+                throw new MemphisException("Linger time cannot be negative.");
+            }
+
+            if(maxBatchBytes < 1) {
+                throw new MemphisException("The maximum batch size must be at least one byte.");
+            }
+
+            if(compressionThreshold < 0) {
+                throw new MemphisException("The compression threshold cannot be negative.");
+            }
+
+            if(spillSegmentBytes < 4096) {
+                throw new MemphisException("Spill segments must be at least 4096 bytes.");
+            }
+
+            if(maxSpillBytes < spillSegmentBytes) {
+                throw new MemphisException("The spill log must be able to hold at least one segment.");
+            }
+
+            if(partitioner == null) {
+                partitioner = new RoundRobinPartitioner();
+            }
+
             return new ProducerOptions(this);
         }
     }
@@ -0,0 +1,514 @@
+package dev.memphis.sdk.producer;
+
+import io.nats.client.Connection;
+import io.nats.client.JetStream;
+import io.nats.client.api.PublishAck;
+import io.nats.client.impl.NatsMessage;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs as a background thread that sends messages in the queue.
+ * Used to implement non-blocking sending.
+ *
+ * Messages are grouped into one batch per partition subject.  A batch
+ * is flushed once it holds maxBatchBytes of payload or its oldest
+ * message has waited lingerMs; linger deadlines are checked after every
+ * message, so a busy partition does not hold back the others.  Flushing publishes every message of
+ * every ready batch asynchronously and then waits once for all the acks.
+ *
+ * If the producer has a spill log, messages that cannot be sent because
+ * the connection is down, or whose publish fails, are written to the log
+ * instead of failing the producer.  While the log holds anything, newer
+ * messages are appended behind it, and once the connection is back the
+ * log is replayed in order.
+ *
+ * The log must stay in FIFO order per partition, so messages only enter
+ * it in the order they were produced: a producer thread that finds the
+ * queue full moves the unsent batches and everything queued into the log
+ * ahead of its own message, holding the lock the drain thread takes to
+ * poll, batch and flush.
+ *
+ * When the log is full, the messages that do not fit stay batched and the
+ * drain thread stops taking messages off the queue until replay frees
+ * room.  The queue then fills up, so producer threads block or fail on
+ * their own message according to the backpressure mode, while the
+ * producer keeps running.
+ */
+class ProducerRunnable implements Runnable {
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final Duration ACK_WAIT_TIME = Duration.ofSeconds(5);
+    private static final int REPLAY_BATCH_SIZE = 1000;
+
+    private final JetStream jetStreamContext;
+    private final Connection connection;
+    private final MpscRingBuffer<NatsMessage> msgQueue;
+    private final MessageTemplate template;
+    private final SpillLog spillLog;
+    private final long lingerNanos;
+    private final int maxBatchBytes;
+    private final Map<String, Batch> batches = new LinkedHashMap<>();
+    private final List<NatsMessage> pendingMessages = new ArrayList<>();
+    private final List<CompletableFuture<PublishAck>> pendingAcks = new ArrayList<>();
+    private final Object lock = new Object();
+    private boolean lingering = false;
+    private boolean backlogged = false;
+    private long nextFlushNanos;
+    private volatile boolean canceled = false;
+    private volatile boolean hasError = false;
+    private volatile String errorMsg = "";
+
+    private static class Batch {
+        private final List<NatsMessage> messages = new ArrayList<>();
+        private int bytes;
+        private long firstAddedNanos;
+
+        private boolean isEmpty() {
+            return messages.isEmpty();
+        }
+
+        private void addFirst(NatsMessage msg, long now) {
+            if(messages.isEmpty()) {
+                firstAddedNanos = now;
+            }
+            messages.add(0, msg);
+            bytes += msg.getData().length;
+        }
+
+        private void add(NatsMessage msg, long now) {
+            if(messages.isEmpty()) {
+                firstAddedNanos = now;
+            }
+            messages.add(msg);
+            bytes += msg.getData().length;
+        }
+
+        private void clear() {
+            messages.clear();
+            bytes = 0;
+        }
+
+        private void removeFirst(int count) {
+            List<NatsMessage> removed = messages.subList(0, count);
+            for(NatsMessage msg : removed) {
+                bytes -= msg.getData().length;
+            }
+            removed.clear();
+        }
+    }
+
+    public ProducerRunnable(JetStream jetStreamContext, Connection connection, MpscRingBuffer<NatsMessage> msgQueue,
+                            MessageTemplate template, SpillLog spillLog, ProducerOptions producerOptions) {
+        this.jetStreamContext = jetStreamContext;
+        this.connection = connection;
+        this.msgQueue = msgQueue;
+        this.template = template;
+        this.spillLog = spillLog;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(producerOptions.lingerMs);
+        this.maxBatchBytes = producerOptions.maxBatchBytes;
+    }
+
+    /**
+     * Drains the queue until canceled.  Messages already queued when
+     * the runnable is canceled are still sent, or left in the spill log
+     * if the connection is down.
+     */
+    @Override
+    public void run() {
+        while(!hasError) {
+            boolean replayed = replaySpillLog();
+            boolean received;
+            boolean lingerElapsed = false;
+            synchronized(lock) {
+                NatsMessage msg = backlogged ? null : msgQueue.poll();
+                received = msg != null;
+                if(received) {
+                    add(msg);
+                    lingerElapsed = lingering && System.nanoTime() - nextFlushNanos >= 0;
+                }
+            }
+            if(received) {
+                if(lingerElapsed) {
+                    flush(false);
+                } else {
+                    awaitAcks();
+                }
+                continue;
+            }
+
+            flush(false);
+            if(replayed) {
+                continue;
+            }
+            if(canceled && (msgQueue.isEmpty() || isBacklogged())) {
+                flush(true);
+                // the last batches may have just gone to the spill log
+                if(replaySpillLog()) {
+                    continue;
+                }
+                dropBacklog();
+                break;
+            }
+
+            try {
+                if(isBacklogged()) {
+                    TimeUnit.NANOSECONDS.sleep(IDLE_WAIT_NANOS);
+                } else {
+                    msgQueue.await(nanosUntilNextFlush(), TimeUnit.NANOSECONDS);
+                }
+            } catch(InterruptedException e) {
+                flush(true);
+                break;
+            }
+        }
+
+        if(spillLog != null) {
+            try {
+                spillLog.close();
+            } catch(IOException e) {
+                fail("Error closing the spill log: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds a message to its batch and publishes the batch if it is full,
+     * or moves every batch to the spill log if newer messages must go
+     * there.  Called holding the lock.
+     */
+    private void add(NatsMessage msg) {
+        Batch batch = batch(msg);
+        if(mustSpill()) {
+            trySpillBatches();
+        } else if(batch.bytes >= maxBatchBytes) {
+            publish(batch);
+        }
+    }
+
+    private boolean isBacklogged() {
+        synchronized(lock) {
+            return backlogged;
+        }
+    }
+
+    /**
+     * Gives up on the messages the full spill log had no room for, when
+     * the runnable is canceled.
+     */
+    private void dropBacklog() {
+        synchronized(lock) {
+            if(!backlogged) {
+                return;
+            }
+            int dropped = 0;
+            for(Batch batch : batches.values()) {
+                dropped += batch.messages.size();
+                batch.clear();
+            }
+            backlogged = false;
+            fail("The spill log is full; " + dropped + " messages were dropped on close.");
+        }
+    }
+
+    /**
+     * Adds a message to the batch of its subject.  Called holding the lock.
+     */
+    private Batch batch(NatsMessage msg) {
+        long now = System.nanoTime();
+        Batch batch = batches.computeIfAbsent(msg.getSubject(), subject -> new Batch());
+        if(batch.isEmpty()) {
+            lingerUntil(now + lingerNanos);
+        }
+        batch.add(msg, now);
+        return batch;
+    }
+
+    /**
+     * Brings the next linger deadline forward to the given time if it is
+     * later.  Called holding the lock.
+     */
+    private void lingerUntil(long deadline) {
+        if(!lingering || deadline - nextFlushNanos < 0) {
+            nextFlushNanos = deadline;
+            lingering = true;
+        }
+    }
+
+    /**
+     * Moves the unsent batches to the spill log and stops polling the
+     * queue if they do not all fit.  Called holding the lock.
+     */
+    private void trySpillBatches() {
+        try {
+            backlogged = !spillBatches();
+        } catch(IOException e) {
+            fail("Error writing to the spill log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the unsent batches to the spill log, in order.  Called
+     * holding the lock.
+     * @return false if the log filled up; the messages that did not fit stay batched
+     */
+    private boolean spillBatches() throws IOException {
+        for(Batch batch : batches.values()) {
+            int spilled = 0;
+            try {
+                while(spilled < batch.messages.size() && spillLog.append(batch.messages.get(spilled))) {
+                    spilled++;
+                }
+            } finally {
+                batch.removeFirst(spilled);
+            }
+            if(!batch.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a message to the spill log for a producer thread that found
+     * the queue full.  The unsent batches and the queued messages go to
+     * the log first, so that the message is not replayed ahead of them.
+     * @return false if the log is full; queued messages that did not fit are batched for the drain thread
+     * @throws IOException if the log cannot be written
+     */
+    public boolean spillFromProducer(NatsMessage msg) throws IOException {
+        synchronized(lock) {
+            try {
+                backlogged = !spillBatches();
+                if(backlogged) {
+                    return false;
+                }
+                NatsMessage queued;
+                while((queued = msgQueue.poll()) != null) {
+                    boolean appended = false;
+                    try {
+                        appended = spillLog.append(queued);
+                    } finally {
+                        if(!appended) {
+                            batch(queued);
+                            backlogged = true;
+                        }
+                    }
+                    if(!appended) {
+                        return false;
+                    }
+                }
+                return spillLog.append(msg);
+            } finally {
+                msgQueue.wakeConsumer();
+            }
+        }
+    }
+
+    private boolean isConnected() {
+        return connection.getStatus() == Connection.Status.CONNECTED;
+    }
+
+    /**
+     * Once anything has been spilled, newer messages have to go through
+     * the log as well so that they are not sent ahead of it.
+     */
+    private boolean mustSpill() {
+        return spillLog != null && (!isConnected() || !spillLog.isEmpty());
+    }
+
+    private long nanosUntilNextFlush() {
+        long wait = IDLE_WAIT_NANOS;
+        long now = System.nanoTime();
+        synchronized(lock) {
+            for(Batch batch : batches.values()) {
+                if(!batch.isEmpty()) {
+                    wait = Math.min(wait, batch.firstAddedNanos + lingerNanos - now);
+                }
+            }
+        }
+        return Math.max(wait, 0);
+    }
+
+    /**
+     * Publishes every batch whose linger time has elapsed, or every
+     * non-empty batch if force is set, then waits for their acks.  If
+     * messages must go to the spill log, every batch is moved there.
+     */
+    private void flush(boolean force) {
+        long now = System.nanoTime();
+        synchronized(lock) {
+            lingering = false;
+            if(mustSpill()) {
+                trySpillBatches();
+            } else {
+                backlogged = false;
+            }
+            for(Batch batch : batches.values()) {
+                if(!batch.isEmpty() && !backlogged && (force || now - batch.firstAddedNanos >= lingerNanos)) {
+                    publish(batch);
+                } else if(!batch.isEmpty()) {
+                    lingerUntil(batch.firstAddedNanos + lingerNanos);
+                }
+            }
+        }
+        awaitAcks();
+    }
+
+    /**
+     * Sends the oldest records of the spill log if the connection is up.
+     * Records are consumed up to
+     * the first one that is not acknowledged, so a partial failure only
+     * resends what may not have arrived.
+     * @return true if any record was consumed
+     */
+    private boolean replaySpillLog() {
+        if(spillLog == null || !isConnected() || spillLog.isEmpty()) {
+            return false;
+        }
+
+        List<SpillLog.Record> records = spillLog.peek(REPLAY_BATCH_SIZE, maxBatchBytes);
+        List<CompletableFuture<PublishAck>> acks = new ArrayList<>(records.size());
+        for(SpillLog.Record record : records) {
+            try {
+                acks.add(jetStreamContext.publishAsync(template.build(record)));
+            } catch(Exception e) {
+                break;
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0]))
+                    .get(ACK_WAIT_TIME.toMillis(), TimeUnit.MILLISECONDS);
+        } catch(ExecutionException | TimeoutException e) {
+            // count the acknowledged prefix below
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int acknowledged = 0;
+        while(acknowledged < acks.size() && acks.get(acknowledged).isDone()
+                && !acks.get(acknowledged).isCompletedExceptionally()) {
+            acknowledged++;
+        }
+        spillLog.advance(acknowledged);
+        return acknowledged > 0;
+    }
+
+    /**
+     * Publishes and clears a batch.  Messages whose publish fails go to
+     * the spill log.  Called holding the lock.
+     */
+    private void publish(Batch batch) {
+        List<NatsMessage> unsent = new ArrayList<>();
+        for(NatsMessage msg : batch.messages) {
+            try {
+                pendingAcks.add(jetStreamContext.publishAsync(msg));
+                pendingMessages.add(msg);
+            } catch(Exception e) {
+                if(spillLog == null) {
+                    fail("Error occurred while connecting to Memphis: " + e.getMessage());
+                    break;
+                }
+                unsent.add(msg);
+            }
+        }
+        batch.clear();
+        spill(unsent);
+    }
+
+    private void awaitAcks() {
+        if(pendingAcks.isEmpty()) {
+            return;
+        }
+
+        try {
+            CompletableFuture.allOf(pendingAcks.toArray(new CompletableFuture<?>[0]))
+                    .get(ACK_WAIT_TIME.toMillis(), TimeUnit.MILLISECONDS);
+        } catch(ExecutionException e) {
+            handleFailedAcks(e.getCause() != null ? e.getCause() : e);
+        } catch(TimeoutException e) {
+            handleFailedAcks(new TimeoutException("Timed out waiting for acknowledgements"));
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            handleFailedAcks(e);
+        } finally {
+            pendingAcks.clear();
+            pendingMessages.clear();
+        }
+    }
+
+    private void handleFailedAcks(Throwable e) {
+        if(spillLog == null) {
+            fail("Error occurred while connecting to Memphis: " + e.getMessage());
+            return;
+        }
+
+        List<NatsMessage> unacknowledged = new ArrayList<>();
+        for(int i = 0; i < pendingAcks.size(); i++) {
+            CompletableFuture<PublishAck> ack = pendingAcks.get(i);
+            if(!ack.isDone() || ack.isCompletedExceptionally()) {
+                unacknowledged.add(pendingMessages.get(i));
+            }
+        }
+        spill(unacknowledged);
+    }
+
+    /**
+     * Writes messages to the spill log in order.  Those that do not fit
+     * go back to the front of their batches, to be spilled once replay
+     * frees room.
+     */
+    private void spill(List<NatsMessage> messages) {
+        if(messages.isEmpty()) {
+            return;
+        }
+        synchronized(lock) {
+            int spilled = 0;
+            try {
+                while(spilled < messages.size() && spillLog.append(messages.get(spilled))) {
+                    spilled++;
+                }
+            } catch(IOException e) {
+                fail("Error writing to the spill log: " + e.getMessage());
+                return;
+            }
+            long now = System.nanoTime();
+            for(int i = messages.size() - 1; i >= spilled; i--) {
+                NatsMessage msg = messages.get(i);
+                batches.computeIfAbsent(msg.getSubject(), subject -> new Batch()).addFirst(msg, now);
+                backlogged = true;
+            }
+        }
+    }
+
+    private void fail(String msg) {
+        errorMsg = msg;
+        hasError = true;
+    }
+
+    public void cancel() {
+        this.canceled = true;
+        msgQueue.wakeConsumer();
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    public boolean hasError() {
+        return hasError;
+    }
+
+    public String getErrorMsg() {
+        return errorMsg;
+    }
+}
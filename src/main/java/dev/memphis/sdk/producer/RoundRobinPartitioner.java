@@ -0,0 +1,15 @@
+package dev.memphis.sdk.producer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads messages evenly over all partitions, ignoring keys.
+ */
+public class RoundRobinPartitioner implements Partitioner {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public int partition(byte[] key, int payloadSize, int numPartitions) {
+        return Math.floorMod(counter.getAndIncrement(), numPartitions);
+    }
+}
@@ -0,0 +1,357 @@
+package dev.memphis.sdk.producer;
+
+import dev.memphis.sdk.compression.CompressionCodec;
+import io.nats.client.impl.NatsMessage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Disk-backed, append-only log that holds messages the producer could not
+ * hand to the broker, so they can be replayed in order later.
+ *
+ * The log is made of fixed-size, memory-mapped segment files.  Every
+ * segment starts with a magic number and a sequence number that orders it
+ * among the others; a sequence of 0 marks a free segment.  Records follow
+ * back to back:
+ *
+ *   int length | int crc32 | byte flags | short subject length | subject | [byte codec length | codec] | payload
+ *
+ * where length counts the bytes after the checksum and the checksum covers
+ * them.  The name of the codec a payload was compressed with is present
+ * when the compressed flag is set, so the record can be replayed by a
+ * producer with another compression setting.  A zero length marks the end of the written part.  Segments whose
+ * records have all been replayed are recycled instead of deleted, so a log
+ * that is written and drained repeatedly does not create new files.
+ *
+ * Writes are not forced to disk individually; segments are forced when
+ * they fill up and when the log is closed.  A record whose checksum does
+ * not match, such as one torn by a crash, ends replay of its segment.
+ * The read position is kept in memory only, so after a restart the
+ * already replayed records of the oldest segment are sent again.
+ */
+class SpillLog implements Closeable {
+    private static final int MAGIC = 0x4d454d53;
+    private static final int SEGMENT_HEADER_BYTES = 12;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int FLAG_COMPRESSED = 1;
+    private static final String SEGMENT_SUFFIX = ".spill";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final ArrayDeque<Segment> used = new ArrayDeque<>();
+    private final ArrayDeque<Segment> free = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private int numSegments;
+    private long nextSequence = 1;
+    private int readOffset = SEGMENT_HEADER_BYTES;
+
+    /**
+     * A message read back from the log.
+     */
+    static class Record {
+        final String subject;
+        final String codec;
+        final byte[] payload;
+
+        /**
+         * @param codec name of the codec the payload was compressed with, or null
+         */
+        Record(String subject, String codec, byte[] payload) {
+            this.subject = subject;
+            this.codec = codec;
+            this.payload = payload;
+        }
+    }
+
+    private static class Segment {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private long sequence;
+        private int writeOffset = SEGMENT_HEADER_BYTES;
+
+        private Segment(Path path, int size) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        private void reset(long sequence) {
+            this.sequence = sequence;
+            this.writeOffset = SEGMENT_HEADER_BYTES;
+            buffer.putInt(SEGMENT_HEADER_BYTES, 0);
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(4, sequence);
+        }
+    }
+
+    /**
+     * Opens the log in the given directory, picking up any records left
+     * by a previous producer.
+     * @param segmentBytes size of each segment file
+     * @param maxBytes total size the segments may take up
+     */
+    public SpillLog(Path directory, int segmentBytes, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.max(1, maxBytes / segmentBytes);
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    private void recover() throws IOException {
+        List<Segment> found = new ArrayList<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for(Path path : files) {
+                if(Files.size(path) != segmentBytes) {
+                    continue;
+                }
+                Segment segment = new Segment(path, segmentBytes);
+                numSegments++;
+                if(segment.buffer.getInt(0) == MAGIC && segment.buffer.getLong(4) > 0) {
+                    segment.sequence = segment.buffer.getLong(4);
+                    segment.writeOffset = scanEnd(segment);
+                    found.add(segment);
+                } else {
+                    free.add(segment);
+                }
+            }
+        }
+
+        found.sort(Comparator.comparingLong(s -> s.sequence));
+        for(Segment segment : found) {
+            used.add(segment);
+            nextSequence = Math.max(nextSequence, segment.sequence + 1);
+        }
+    }
+
+    private int scanEnd(Segment segment) {
+        int offset = SEGMENT_HEADER_BYTES;
+        while(readAt(segment, offset) != null) {
+            offset += RECORD_HEADER_BYTES + segment.buffer.getInt(offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Appends a message at the end of the log.
+     * @return false if the log has reached its maximum size
+     * @throws IOException if the message does not fit in a segment or a segment cannot be created
+     */
+    public synchronized boolean append(NatsMessage msg) throws IOException {
+        byte[] subject = msg.getSubject().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = msg.getData();
+        String codecName = msg.getHeaders() != null ? msg.getHeaders().getFirst(CompressionCodec.HEADER) : null;
+        byte[] codec = codecName != null ? codecName.getBytes(StandardCharsets.UTF_8) : null;
+        if(codec != null && codec.length > 255) {
+            throw new IOException("Codec name " + codecName + " is too long for the spill log.");
+        }
+        int length = 1 + 2 + subject.length + (codec != null ? 1 + codec.length : 0) + payload.length;
+        int recordBytes = RECORD_HEADER_BYTES + length;
+        if(recordBytes > segmentBytes - SEGMENT_HEADER_BYTES) {
+            throw new IOException("Message of " + payload.length + " bytes does not fit in a spill segment of " + segmentBytes + " bytes.");
+        }
+
+        Segment segment = used.peekLast();
+        if(segment == null || segment.writeOffset + recordBytes > segmentBytes) {
+            if(segment != null) {
+                segment.buffer.force();
+            }
+            segment = nextSegment();
+            if(segment == null) {
+                return false;
+            }
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = segment.writeOffset;
+        int body = offset + RECORD_HEADER_BYTES;
+        buffer.put(body, codec != null ? (byte) FLAG_COMPRESSED : 0);
+        buffer.putShort(body + 1, (short) subject.length);
+        buffer.position(body + 3);
+        buffer.put(subject);
+        if(codec != null) {
+            buffer.put((byte) codec.length);
+            buffer.put(codec);
+        }
+        buffer.put(payload);
+
+        crc.reset();
+        crc.update(buffer.duplicate().position(body).limit(body + length));
+        buffer.putInt(offset + 4, (int) crc.getValue());
+
+        int end = offset + recordBytes;
+        if(end + 4 <= segmentBytes) {
+            buffer.putInt(end, 0);
+        }
+        buffer.putInt(offset, length);
+        segment.writeOffset = end;
+        return true;
+    }
+
+    private Segment nextSegment() throws IOException {
+        Segment segment = free.poll();
+        if(segment == null) {
+            if(numSegments >= maxSegments) {
+                return null;
+            }
+            segment = new Segment(directory.resolve(String.format("%05d%s", numSegments, SEGMENT_SUFFIX)), segmentBytes);
+            numSegments++;
+        }
+        segment.reset(nextSequence++);
+        if(used.isEmpty()) {
+            readOffset = SEGMENT_HEADER_BYTES;
+        }
+        used.add(segment);
+        return segment;
+    }
+
+    /**
+     * Reads records from the oldest unreplayed one onwards without
+     * consuming them.
+     * @param maxRecords maximum number of records to return
+     * @param maxBytes stop after the payloads read reach this many bytes
+     */
+    public synchronized List<Record> peek(int maxRecords, int maxBytes) {
+        List<Record> records = new ArrayList<>();
+        int bytes = 0;
+        int offset = readOffset;
+        Iterator<Segment> segments = used.iterator();
+        Segment segment = segments.hasNext() ? segments.next() : null;
+        while(segment != null && records.size() < maxRecords && bytes < maxBytes) {
+            Record record = offset < segment.writeOffset ? readAt(segment, offset) : null;
+            if(record == null) {
+                segment = segments.hasNext() ? segments.next() : null;
+                offset = SEGMENT_HEADER_BYTES;
+                continue;
+            }
+            records.add(record);
+            bytes += record.payload.length;
+            offset += RECORD_HEADER_BYTES + segment.buffer.getInt(offset);
+        }
+        return records;
+    }
+
+    /**
+     * Consumes records returned by peek once they have been sent.
+     * Segments that have been read completely are recycled.
+     * @param numRecords number of records, from the start of the last peek, to consume
+     */
+    public synchronized void advance(int numRecords) {
+        while(numRecords > 0 && skipExhaustedHead()) {
+            Segment segment = used.peekFirst();
+            readOffset += RECORD_HEADER_BYTES + segment.buffer.getInt(readOffset);
+            numRecords--;
+        }
+        skipExhaustedHead();
+    }
+
+    /**
+     * Recycles segments at the head of the log while they hold no more
+     * intact records.  The last segment is reset in place so that
+     * appending can carry on in the same file.
+     * @return true if the read position is at an intact record
+     */
+    private boolean skipExhaustedHead() {
+        while(!used.isEmpty()) {
+            Segment segment = used.peekFirst();
+            if(readOffset < segment.writeOffset && readAt(segment, readOffset) != null) {
+                return true;
+            }
+
+            if(used.size() == 1) {
+                if(segment.writeOffset > SEGMENT_HEADER_BYTES) {
+                    segment.reset(nextSequence++);
+                }
+                readOffset = SEGMENT_HEADER_BYTES;
+                return false;
+            }
+
+            used.poll();
+            segment.sequence = 0;
+            segment.buffer.putLong(4, 0);
+            free.add(segment);
+            readOffset = SEGMENT_HEADER_BYTES;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the record at offset, or returns null if there is no intact
+     * record there.
+     */
+    private Record readAt(Segment segment, int offset) {
+        MappedByteBuffer buffer = segment.buffer;
+        if(offset + RECORD_HEADER_BYTES > segmentBytes) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        int body = offset + RECORD_HEADER_BYTES;
+        if(length < 3 || body + length > segmentBytes) {
+            return null;
+        }
+
+        crc.reset();
+        crc.update(buffer.duplicate().position(body).limit(body + length));
+        if((int) crc.getValue() != buffer.getInt(offset + 4)) {
+            return null;
+        }
+
+        boolean compressed = (buffer.get(body) & FLAG_COMPRESSED) != 0;
+        int subjectLength = buffer.getShort(body + 1) & 0xffff;
+        if(3 + subjectLength > length) {
+            return null;
+        }
+        ByteBuffer fields = buffer.duplicate().position(body + 3).limit(body + length);
+        byte[] subject = new byte[subjectLength];
+        fields.get(subject);
+        String codec = null;
+        if(compressed) {
+            int codecLength = fields.hasRemaining() ? fields.get() & 0xff : -1;
+            if(codecLength < 0 || codecLength > fields.remaining()) {
+                return null;
+            }
+            byte[] codecName = new byte[codecLength];
+            fields.get(codecName);
+            codec = new String(codecName, StandardCharsets.UTF_8);
+        }
+        byte[] payload = new byte[fields.remaining()];
+        fields.get(payload);
+        return new Record(new String(subject, StandardCharsets.UTF_8), codec, payload);
+    }
+
+    /**
+     * @return true if there are no records left to replay
+     */
+    public synchronized boolean isEmpty() {
+        return !skipExhaustedHead();
+    }
+
+    /**
+     * Forces all written records to disk and closes the segment files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for(Segment segment : used) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+        for(Segment segment : free) {
+            segment.channel.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package dev.memphis.sdk.producer;
+
+/**
+ * Sends messages to one partition until a batch worth of payload has
+ * gone there, then moves on to the next partition.  Keeping consecutive
+ * messages together lets produceNonblocking send them in fewer, larger
+ * batches.  Keys are ignored.
+ */
+public class StickyPartitioner implements Partitioner {
+    private final int batchBytes;
+    private int current;
+    private long filled;
+
+    /**
+     * @param batchBytes bytes to send to a partition before switching, usually ProducerOptions.maxBatchBytes
+     */
+    public StickyPartitioner(int batchBytes) {
+        this.batchBytes = Math.max(1, batchBytes);
+    }
+
+    @Override
+    public synchronized int partition(byte[] key, int payloadSize, int numPartitions) {
+        if(current >= numPartitions) {
+            current = 0;
+            filled = 0;
+        }
+
+        int partitionIdx = current;
+        filled += payloadSize;
+        if(filled >= batchBytes) {
+            current = (current + 1) % numPartitions;
+            filled = 0;
+        }
+        return partitionIdx;
+    }
+}
@@ -0,0 +1,134 @@
+package dev.memphis.sdk;
+
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AcknowledgerTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(2);
+
+    private final List<String> replies = new ArrayList<>();
+    private final Map<String, CompletableFuture<Message>> requests = new HashMap<>();
+    private int flushes = 0;
+    private boolean flushFails = false;
+
+    /**
+     * Records flushes and ack requests, whose confirmations the tests
+     * complete themselves.
+     */
+    private final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+                switch(method.getName()) {
+                    case "flushBuffer":
+                        flushes++;
+                        if(flushFails) {
+                            throw new IOException("connection lost");
+                        }
+                        return null;
+                    case "requestWithTimeout":
+                        assertEquals(new String((byte[]) args[1]), "+ACK");
+                        assertEquals(args[2], TIMEOUT);
+                        CompletableFuture<Message> confirmation = new CompletableFuture<>();
+                        requests.put((String) args[0], confirmation);
+                        return confirmation;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+    private final Acknowledger acknowledger = new Acknowledger(connection, TIMEOUT);
+
+    /**
+     * A message that records its replies as "reply subject".
+     */
+    private MemphisMessage message(String replyTo) {
+        Message message = (Message) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Message.class},
+                (proxy, method, args) -> {
+                    switch(method.getName()) {
+                        case "getReplyTo":
+                            return replyTo;
+                        case "hasHeaders":
+                            return false;
+                        case "nakWithDelay":
+                            replies.add("nak+" + ((Duration) args[0]).toMillis() + " " + replyTo);
+                            return null;
+                        default:
+                            replies.add(method.getName() + " " + replyTo);
+                            return null;
+                    }
+                });
+        return new MemphisMessage(message, "group");
+    }
+
+    @Test
+    public void repliesToEveryMessageAndFlushesOnce() {
+        List<MemphisMessage> messages = List.of(message("a"), message("b"));
+
+        acknowledger.ack(messages);
+        acknowledger.nak(messages);
+        acknowledger.nakWithDelay(messages, Duration.ofSeconds(3));
+        acknowledger.inProgress(messages);
+        acknowledger.term(messages);
+
+        assertEquals(replies, List.of("ack a", "ack b", "nak a", "nak b", "nak+3000 a", "nak+3000 b",
+                "inProgress a", "inProgress b", "term a", "term b"));
+        assertEquals(flushes, 5);
+    }
+
+    @Test
+    public void failedFlushLeavesRepliesQueued() {
+        flushFails = true;
+        acknowledger.ack(List.of(message("a")));
+        assertEquals(replies, List.of("ack a"));
+    }
+
+    @Test
+    public void ackAsyncCompletesOnceEveryAckIsConfirmed() {
+        CompletableFuture<Void> confirmed = acknowledger.ackAsync(List.of(message("a"), message("b")));
+        assertEquals(requests.keySet(), Set.of("a", "b"));
+        assertEquals(flushes, 1);
+
+        requests.get("a").complete(null);
+        assertFalse(confirmed.isDone());
+        requests.get("b").complete(null);
+        assertTrue(confirmed.isDone());
+        assertFalse(confirmed.isCompletedExceptionally());
+    }
+
+    @Test
+    public void ackAsyncFailsWhenAnAckIsNotConfirmed() {
+        CompletableFuture<Void> confirmed = acknowledger.ackAsync(List.of(message("a"), message("b")));
+        requests.get("a").complete(null);
+        requests.get("b").completeExceptionally(new TimeoutException("no reply"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, confirmed::get);
+        assertInstanceOf(TimeoutException.class, e.getCause());
+    }
+
+    @Test
+    public void ackAsyncRejectsMessageWithoutReplySubject() {
+        CompletableFuture<Void> confirmed = acknowledger.ackAsync(message(null));
+
+        ExecutionException e = assertThrows(ExecutionException.class, confirmed::get);
+        assertInstanceOf(MemphisException.class, e.getCause());
+        assertTrue(requests.isEmpty());
+    }
+}
@@ -0,0 +1,148 @@
+package dev.memphis.sdk;
+
+import io.nats.client.Connection;
+import io.nats.client.JetStreamManagement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemphisConnectionTest {
+    private final List<ScheduledExecutorService> created = new ArrayList<>();
+    private final AtomicInteger closed = new AtomicInteger();
+    private boolean failSetup = false;
+
+    private final JetStreamManagement jsm = (JetStreamManagement) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{JetStreamManagement.class}, (proxy, method, args) -> null);
+
+    /**
+     * A connected broker connection, whose JetStream management context
+     * cannot be created when failSetup is set.
+     */
+    private final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+                switch(method.getName()) {
+                    case "jetStreamManagement":
+                        if(failSetup) {
+                            throw new IOException("JetStream is not enabled");
+                        }
+                        return jsm;
+                    case "getStatus":
+                        return Connection.Status.CONNECTED;
+                    case "close":
+                        closed.incrementAndGet();
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+
+    private ScheduledExecutorService createExecutor() {
+        ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1);
+        created.add(executor);
+        return executor;
+    }
+
+    private static ClientOptions.Builder options() {
+        return new ClientOptions.Builder()
+                .host("localhost")
+                .username("user")
+                .connectionToken("token");
+    }
+
+    private MemphisConnection connect(ClientOptions opts) throws MemphisConnectException {
+        return new MemphisConnection(opts, options -> connection, this::createExecutor);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        created.forEach(ExecutorService::shutdownNow);
+    }
+
+    @Test
+    public void createsExecutorOnConnectAndShutsItDownOnClose() throws Exception {
+        MemphisConnection memphis = connect(options().build());
+        assertEquals(created.size(), 1);
+        assertFalse(created.get(0).isShutdown());
+
+        memphis.close();
+        assertTrue(created.get(0).isShutdown());
+        assertEquals(closed.get(), 1);
+    }
+
+    @Test
+    public void failedConnectCreatesNoExecutor() throws Exception {
+        ClientOptions opts = options().build();
+        assertThrows(MemphisConnectException.class, () -> new MemphisConnection(opts, options -> {
+            throw new IOException("connection refused");
+        }, this::createExecutor));
+        assertTrue(created.isEmpty());
+    }
+
+    @Test
+    public void failedSetupReleasesExecutorAndConnection() throws Exception {
+        failSetup = true;
+        ClientOptions opts = options().build();
+        MemphisConnectException e = assertThrows(MemphisConnectException.class, () -> connect(opts));
+
+        assertTrue(e.getMessage().contains("JetStream is not enabled"));
+        assertEquals(created.size(), 1);
+        assertTrue(created.get(0).isShutdown());
+        assertEquals(closed.get(), 1);
+    }
+
+    @Test
+    public void leavesSuppliedExecutorRunning() throws Exception {
+        ScheduledExecutorService supplied = new ScheduledThreadPoolExecutor(1);
+        try {
+            connect(options().consumerExecutor(supplied).build()).close();
+            assertTrue(created.isEmpty());
+            assertFalse(supplied.isShutdown());
+
+            failSetup = true;
+            ClientOptions opts = options().consumerExecutor(supplied).build();
+            assertThrows(MemphisConnectException.class, () -> connect(opts));
+            assertFalse(supplied.isShutdown());
+        } finally {
+            supplied.shutdownNow();
+        }
+    }
+
+    /**
+     * Stands in for Executors on a JVM with virtual threads.
+     */
+    public static class VirtualThreadExecutors {
+        public static ExecutorService newVirtualThreadPerTaskExecutor() {
+            return Executors.newSingleThreadExecutor();
+        }
+    }
+
+    @Test
+    public void virtualThreadExecutorIsLookedUpReflectively() throws Exception {
+        ExecutorService executor = MemphisConnection.createVirtualThreadExecutor(VirtualThreadExecutors.class);
+        executor.shutdownNow();
+
+        MemphisConnectException e = assertThrows(MemphisConnectException.class,
+                () -> MemphisConnection.createVirtualThreadExecutor(Object.class));
+        assertTrue(e.getMessage().startsWith("Virtual threads are not available"));
+
+        if(Runtime.version().feature() < 21) {
+            assertThrows(MemphisConnectException.class, () -> MemphisConnection.createVirtualThreadExecutor(Executors.class));
+        } else {
+            MemphisConnection.createVirtualThreadExecutor(Executors.class).shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package dev.memphis.sdk;
+
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsJetStreamMetaData;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemphisMessageTest {
+    private static class StationMessage extends NatsMessage {
+        private StationMessage(String subject, String replyTo, Headers headers, byte[] data) {
+            super(subject, replyTo, headers, data);
+        }
+
+        @Override
+        public boolean isJetStream() {
+            return true;
+        }
+
+        @Override
+        public NatsJetStreamMetaData metaData() {
+            return new NatsJetStreamMetaData(this);
+        }
+    }
+
+    @Test
+    public void readsMetadataLazily() {
+        long nanos = 1690000000123456789L;
+        var headers = new Headers().put("id", "a").add("tag", "x", "y");
+        var message = new MemphisMessage(new StationMessage("orders$3.final",
+                "$JS.ACK.orders$3.group.3.42.7." + nanos + ".0", headers, "body".getBytes()), "group");
+
+        assertEquals(message.getPartition(), 3);
+        assertEquals(message.getSequence(), 42);
+        assertEquals(message.getConsumerSequence(), 7);
+        assertEquals(message.getRedeliveryCount(), 2);
+        assertEquals(message.getTimestamp(), Instant.ofEpochSecond(0, nanos));
+        assertEquals(message.getHeader("id"), "a");
+        assertEquals(message.getHeaders().get("tag"), List.of("x", "y"));
+        assertEquals(message.getHeaders().size(), 2);
+        assertThrows(UnsupportedOperationException.class, () -> message.getHeaders().get("tag").add("z"));
+
+        ByteBuffer view = message.getDataBuffer();
+        assertTrue(view.isReadOnly());
+        assertEquals(view.remaining(), 4);
+        assertEquals(view.get(0), 'b');
+    }
+
+    @Test
+    public void defaultsWithoutMetadata() {
+        var message = new MemphisMessage(new NatsMessage("subject", null, null, new byte[0]), "group");
+        assertEquals(message.getSequence(), 0);
+        assertNull(message.getTimestamp());
+        assertEquals(message.getRedeliveryCount(), 0);
+        assertTrue(message.getHeaders().isEmpty());
+        assertNull(message.getHeader("id"));
+    }
+}
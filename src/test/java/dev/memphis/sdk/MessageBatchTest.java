@@ -0,0 +1,32 @@
+package dev.memphis.sdk;
+
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageBatchTest {
+    @Test
+    public void reusesWrappersAfterClear() {
+        var batch = new MessageBatch();
+        batch.add(new NatsMessage("station$1.final", null, new Headers().put("id", "a"), "a".getBytes()), "group");
+        batch.add(new NatsMessage("station$1.final", null, null, "b".getBytes()), "group");
+        MemphisMessage first = batch.messages().get(0);
+        assertEquals(first.getPartition(), 1);
+        assertEquals(new String(first.getData()), "a");
+
+        batch.clear();
+        assertTrue(batch.isEmpty());
+        batch.add(new NatsMessage("station$2.final", null, null, "c".getBytes()), "group");
+
+        assertEquals(batch.size(), 1);
+        assertSame(batch.messages().get(0), first);
+        assertEquals(first.getPartition(), 2);
+        assertEquals(new String(first.getData()), "c");
+        assertNull(first.getHeader("id"));
+    }
+}
@@ -0,0 +1,103 @@
+package dev.memphis.sdk.brokerrequests;
+
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.MessageHandler;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionsUpdateSubscriberTest {
+    private static final String SUBJECT = "$memphis_partitions_updates_orders";
+
+    private final Map<String, MessageHandler> handlers = new HashMap<>();
+    private final List<String> unsubscribed = new ArrayList<>();
+    private int dispatchers = 0;
+
+    private final Dispatcher dispatcher = (Dispatcher) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Dispatcher.class},
+            (proxy, method, args) -> {
+                switch(method.getName()) {
+                    case "subscribe":
+                        handlers.put((String) args[0], (MessageHandler) args[1]);
+                        return null;
+                    case "unsubscribe":
+                        handlers.remove((String) args[0]);
+                        unsubscribed.add((String) args[0]);
+                        return proxy;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+    private final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+                if(!method.getName().equals("createDispatcher")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                dispatchers++;
+                return dispatcher;
+            });
+
+    private void send(String subject, String json) throws InterruptedException {
+        handlers.get(subject).onMessage(new NatsMessage(subject, null, json.getBytes()));
+    }
+
+    @Test
+    public void handsUpdatesToEveryListenerOfTheStation() throws Exception {
+        var subscriber = new PartitionsUpdateSubscriber(connection);
+        List<List<Integer>> first = new ArrayList<>();
+        List<List<Integer>> second = new ArrayList<>();
+        subscriber.subscribe("orders", partitions -> {
+            throw new IllegalStateException("listener failed");
+        });
+        subscriber.subscribe("orders", first::add);
+        subscriber.subscribe("Orders", second::add);
+        subscriber.subscribe("payments", partitions -> {});
+
+        send(SUBJECT, "{\"partitions_list\":[1,2,3],\"other\":true}");
+
+        assertEquals(first, List.of(List.of(1, 2, 3)));
+        assertEquals(second, List.of(List.of(1, 2, 3)));
+        assertEquals(dispatchers, 1);
+        assertEquals(handlers.size(), 2);
+    }
+
+    @Test
+    public void ignoresMalformedAndEmptyUpdates() throws Exception {
+        var subscriber = new PartitionsUpdateSubscriber(connection);
+        List<List<Integer>> received = new ArrayList<>();
+        subscriber.subscribe("orders", received::add);
+
+        send(SUBJECT, "not json");
+        send(SUBJECT, "{\"partitions_list\":[]}");
+        send(SUBJECT, "{}");
+
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void unsubscribesWithTheLastListener() throws Exception {
+        var subscriber = new PartitionsUpdateSubscriber(connection);
+        List<List<Integer>> received = new ArrayList<>();
+        java.util.function.Consumer<List<Integer>> first = received::add;
+        java.util.function.Consumer<List<Integer>> second = received::add;
+        subscriber.subscribe("orders", first);
+        subscriber.subscribe("orders", second);
+
+        subscriber.unsubscribe("orders", first);
+        assertTrue(unsubscribed.isEmpty());
+        send(SUBJECT, "{\"partitions_list\":[4]}");
+        assertEquals(received, List.of(List.of(4)));
+
+        subscriber.unsubscribe("orders", second);
+        assertEquals(unsubscribed, List.of(SUBJECT));
+    }
+}
@@ -0,0 +1,96 @@
+package dev.memphis.sdk.compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressionCodecTest {
+    private static final byte[] JSON = "{\"event\":\"click\",\"user\":12345,\"tags\":[\"a\",\"b\"]}".repeat(200)
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void deflateRoundTrip() throws IOException {
+        roundTrip(new DeflateCodec());
+    }
+
+    @Test
+    public void gzipRoundTrip() throws IOException {
+        roundTrip(new GzipCodec());
+    }
+
+    @Test
+    public void builtInCodecsAreRegistered() {
+        assertInstanceOf(DeflateCodec.class, CompressionCodecs.forName(DeflateCodec.NAME));
+        assertInstanceOf(GzipCodec.class, CompressionCodecs.forName(GzipCodec.NAME));
+        assertNull(CompressionCodecs.forName("unknown"));
+    }
+
+    @Test
+    public void corruptPayloadIsRejected() {
+        byte[] garbage = new byte[] {1, 2, 3, 4, 5};
+        assertThrows(IOException.class, () -> new DeflateCodec().decompress(garbage));
+        assertThrows(IOException.class, () -> new GzipCodec().decompress(garbage));
+    }
+
+    @Test
+    public void decompressionStopsAtTheLimit() throws IOException {
+        // 16 MiB of zeros compress to a few kilobytes
+        byte[] zeros = new byte[16 * 1024 * 1024];
+        for(CompressionCodec codec : new CompressionCodec[] {new DeflateCodec(), new GzipCodec()}) {
+            byte[] bomb = codec.compress(zeros, 0, zeros.length);
+            IOException e = assertThrows(IOException.class, () -> codec.decompress(bomb, 1024 * 1024));
+            assertTrue(e.getMessage().contains("exceeds 1048576 bytes"), e.getMessage());
+
+            byte[] compressed = codec.compress(JSON, 0, JSON.length);
+            assertArrayEquals(codec.decompress(compressed, JSON.length), JSON);
+            assertThrows(IOException.class, () -> codec.decompress(compressed, JSON.length - 1));
+            // the large buffers grown on the way are not kept by the thread
+            assertTrue(ScratchBuffer.get(0).length <= 256 * 1024);
+        }
+    }
+
+    @Test
+    public void decompressionUsesTheConfiguredLimit() throws IOException {
+        byte[] compressed = new GzipCodec().compress(JSON, 0, JSON.length);
+        CompressionCodecs.setMaxDecompressedSize(JSON.length - 1);
+        try {
+            assertThrows(IOException.class, () -> new GzipCodec().decompress(compressed));
+        } finally {
+            CompressionCodecs.setMaxDecompressedSize(CompressionCodecs.DEFAULT_MAX_DECOMPRESSED_SIZE);
+        }
+        assertArrayEquals(new GzipCodec().decompress(compressed), JSON);
+        assertThrows(IllegalArgumentException.class, () -> CompressionCodecs.setMaxDecompressedSize(0));
+    }
+
+    @Test
+    public void bufferEstimateDoesNotOverflow() {
+        assertEquals(ScratchBuffer.estimate(Integer.MAX_VALUE / 2, 4, 1000), 1000);
+        assertEquals(ScratchBuffer.estimate(100, 4, 1000), 400);
+        assertEquals(ScratchBuffer.limit(Integer.MAX_VALUE), ScratchBuffer.MAX_ARRAY_SIZE);
+    }
+
+    private static void roundTrip(CompressionCodec codec) throws IOException {
+        byte[] compressed = codec.compress(JSON, 0, JSON.length);
+        assertTrue(compressed.length * 5 < JSON.length);
+        assertArrayEquals(codec.decompress(compressed), JSON);
+
+        // larger than the initial scratch buffer, so it has to grow
+        byte[] random = new byte[300 * 1024];
+        new Random(42).nextBytes(random);
+        assertArrayEquals(codec.decompress(codec.compress(random, 0, random.length)), random);
+
+        byte[] slice = codec.compress(JSON, 10, 100);
+        byte[] expected = new byte[100];
+        System.arraycopy(JSON, 10, expected, 0, 100);
+        assertArrayEquals(codec.decompress(slice), expected);
+    }
+}
@@ -0,0 +1,38 @@
+package dev.memphis.sdk.consumer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveBatchSizerTest {
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void growsWhileFullAndWithinTarget() {
+        var sizer = new AdaptiveBatchSizer(1, 64, TARGET, 10);
+        sizer.record(10, 10, TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(sizer.size(), 20);
+        for(int i = 0; i < 10; i++) {
+            sizer.record(sizer.size(), sizer.size(), TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(sizer.size(), 64);
+    }
+
+    @Test
+    public void shrinksOnSlowHandlerAndSparseBatches() {
+        var sizer = new AdaptiveBatchSizer(2, 1000, TARGET, 100);
+        // 5 ms per message allows 20 messages within the target
+        sizer.record(100, 100, TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(sizer.size(), 20);
+
+        sizer.record(20, 3, TimeUnit.MILLISECONDS.toNanos(15));
+        assertEquals(sizer.size(), 10);
+        sizer.record(10, 0, 0);
+        assertEquals(sizer.size(), 5);
+        sizer.record(5, 0, 0);
+        sizer.record(2, 0, 0);
+        assertEquals(sizer.size(), 2);
+    }
+}
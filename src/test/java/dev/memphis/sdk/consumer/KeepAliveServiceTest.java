@@ -0,0 +1,135 @@
+package dev.memphis.sdk.consumer;
+
+import io.nats.client.JetStreamManagement;
+import io.nats.client.api.ConsumerInfo;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeepAliveServiceTest {
+    private static final Duration INTERVAL = Duration.ofSeconds(10);
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+    private Set<String> failing = Set.of();
+
+    /**
+     * Records every consumer info request as "station/group" and fails
+     * those of the stations in failing.
+     */
+    private final JetStreamManagement jsm = (JetStreamManagement) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{JetStreamManagement.class}, (proxy, method, args) -> {
+                if(!method.getName().equals("getConsumerInfo")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                calls.add(args[0] + "/" + args[1]);
+                if(failing.contains((String) args[0])) {
+                    throw new IOException("timed out");
+                }
+                String json = "{\"stream_name\":\"" + args[0] + "\",\"name\":\"" + args[1] + "\",\"num_pending\":3}";
+                return new ConsumerInfo(new NatsMessage("info", null, json.getBytes()));
+            });
+
+    /**
+     * An executor that never runs the keep-alive task, so that the tests
+     * call tick themselves.
+     */
+    private final ScheduledExecutorService executor = (ScheduledExecutorService) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{ScheduledExecutorService.class}, (proxy, method, args) ->
+                    Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ScheduledFuture.class},
+                            (future, futureMethod, futureArgs) -> futureMethod.getName().equals("cancel") ? true : null));
+
+    @Test
+    public void spreadsKeepAlivesOverTheInterval() {
+        var service = new KeepAliveService(jsm, executor, INTERVAL, null);
+        long start = System.nanoTime();
+        for(int i = 0; i < 100; i++) {
+            service.register("station$" + i, "group");
+        }
+        long registered = System.nanoTime();
+
+        service.tick(start + INTERVAL.toNanos() / 2);
+        int firstHalf = calls.size();
+        assertTrue(firstHalf > 10 && firstHalf < 90, "expected about half the partitions to be due, got " + firstHalf);
+
+        service.tick(registered + INTERVAL.toNanos());
+        assertEquals(calls.size(), 100);
+        assertNotNull(service.getConsumerInfo("station$0", "group"));
+        assertEquals(service.getConsumerInfo("station$0", "group").getNumPending(), 3);
+    }
+
+    @Test
+    public void backsOffFailedKeepAlivesUpToTheInterval() {
+        List<Integer> failures = new ArrayList<>();
+        var service = new KeepAliveService(jsm, executor, Duration.ofSeconds(5),
+                (station, group, error, consecutiveFailures) -> failures.add(consecutiveFailures));
+        failing = Set.of("station$1");
+        service.register("station$1", "group");
+
+        long now = System.nanoTime() + INTERVAL.toNanos();
+        service.tick(now);
+        // retried after 1, 2, 4 seconds, then every interval of 5 seconds
+        int expected = 1;
+        for(long delay : new long[]{1, 2, 4, 5, 5}) {
+            service.tick(now + delay * SECOND - 1);
+            assertEquals(calls.size(), expected);
+            now += delay * SECOND;
+            service.tick(now);
+            assertEquals(calls.size(), ++expected);
+        }
+
+        assertEquals(failures, List.of(1, 2, 3, 4, 5, 6));
+        failing = Set.of();
+        service.tick(now + 5 * SECOND);
+        assertEquals(calls.size(), 7);
+        assertNotNull(service.getConsumerInfo("station$1", "group"));
+    }
+
+    @Test
+    public void keepsPartitionAliveUntilLastRegistrationIsRemoved() {
+        var service = new KeepAliveService(jsm, executor, INTERVAL, null);
+        service.register("station$1", "group");
+        service.register("station$1", "group");
+
+        service.unregister("station$1", "group");
+        service.tick(System.nanoTime() + INTERVAL.toNanos());
+        assertEquals(calls, List.of("station$1/group"));
+
+        service.unregister("station$1", "group");
+        service.tick(System.nanoTime() + 2 * INTERVAL.toNanos());
+        assertEquals(calls.size(), 1);
+        assertNull(service.getConsumerInfo("station$1", "group"));
+    }
+
+    @Test
+    public void throwingListenerDoesNotStopKeepAlives() {
+        var service = new KeepAliveService(jsm, executor, INTERVAL, (station, group, error, consecutiveFailures) -> {
+            throw new IllegalStateException("listener failed");
+        });
+        failing = Set.of("station$1", "station$2");
+        service.register("station$1", "group");
+        service.register("station$2", "group");
+
+        long now = System.nanoTime() + INTERVAL.toNanos();
+        assertDoesNotThrow(() -> service.tick(now));
+        assertEquals(calls.size(), 2);
+        assertDoesNotThrow(() -> service.tick(now + SECOND));
+        assertEquals(calls.size(), 4);
+    }
+}
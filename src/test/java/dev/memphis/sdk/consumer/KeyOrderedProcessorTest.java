@@ -0,0 +1,146 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.MemphisException;
+import dev.memphis.sdk.MemphisMessage;
+import dev.memphis.sdk.MessageBatch;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyOrderedProcessorTest {
+    private static class RecordingMessage extends NatsMessage {
+        private final List<String> acks;
+
+        private RecordingMessage(int partition, String key, String body, List<String> acks) {
+            super("station$" + partition + ".final", null, new Headers().put("key", key), body.getBytes());
+            this.acks = acks;
+        }
+
+        @Override
+        public void ack() {
+            acks.add(new String(getData()));
+        }
+
+        @Override
+        public void nak() {
+            acks.add("nak " + new String(getData()));
+        }
+    }
+
+    @Test
+    public void keepsOrderPerKeyAndAcksInOrderPerPartition() throws MemphisException, InterruptedException {
+        List<String> acks = Collections.synchronizedList(new ArrayList<>());
+        Map<String, List<String>> handled = new ConcurrentHashMap<>();
+
+        var processor = new KeyOrderedProcessor(4, 16, KeyOrderedProcessor.byHeader("key"), msg -> {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+            String body = new String(msg.getData());
+            handled.computeIfAbsent(msg.getHeader("key"), key -> Collections.synchronizedList(new ArrayList<>())).add(body);
+            if(body.equals("7")) {
+                throw new Exception("failed");
+            }
+        });
+
+        List<MemphisMessage> batch = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            batch.add(new MemphisMessage(new RecordingMessage(1, "key-" + i % 5, String.valueOf(i), acks), "group"));
+            expected.add(i == 7 ? "nak 7" : String.valueOf(i));
+        }
+        processor.accept(batch);
+        processor.close();
+
+        assertEquals(acks, expected);
+        for(int k = 0; k < 5; k++) {
+            List<String> bodies = handled.get("key-" + k);
+            for(int i = 1; i < bodies.size(); i++) {
+                assertEquals(Integer.parseInt(bodies.get(i)) - Integer.parseInt(bodies.get(i - 1)), 5);
+            }
+        }
+        assertEquals(processor.getPendingCount(), 0);
+    }
+
+    @Test
+    public void keepsWorkingAfterHandlerThrowsError() throws MemphisException, InterruptedException {
+        List<String> acks = Collections.synchronizedList(new ArrayList<>());
+
+        // with a limit of one, a message never completed would stop pulls for good
+        var processor = new KeyOrderedProcessor(1, 1, KeyOrderedProcessor.byHeader("key"), msg -> {
+            if(new String(msg.getData()).equals("0")) {
+                throw new StackOverflowError();
+            }
+        });
+
+        List<MemphisMessage> batch = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            batch.add(new MemphisMessage(new RecordingMessage(1, "key", String.valueOf(i), acks), "group"));
+        }
+        processor.accept(batch);
+        processor.close();
+
+        assertEquals(acks, List.of("nak 0", "1", "2"));
+        assertEquals(processor.getPendingCount(), 0);
+        assertTrue(processor.hasCapacity());
+    }
+
+    @Test
+    public void reportsNoCapacityInsteadOfBlocking() throws MemphisException, InterruptedException {
+        List<String> acks = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+
+        var processor = new KeyOrderedProcessor(1, 2, KeyOrderedProcessor.byHeader("key"), msg -> release.await());
+
+        List<MemphisMessage> batch = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            batch.add(new MemphisMessage(new RecordingMessage(1, "key", String.valueOf(i), acks), "group"));
+        }
+        assertTrue(processor.hasCapacity());
+        // returns at once although it exceeds the limit
+        processor.accept(batch);
+        assertFalse(processor.hasCapacity());
+
+        release.countDown();
+        processor.close();
+        assertTrue(processor.hasCapacity());
+        assertEquals(acks, List.of("0", "1", "2"));
+    }
+
+    @Test
+    public void keepsMessagesOfRecycledBatches() throws MemphisException, InterruptedException {
+        List<String> acks = Collections.synchronizedList(new ArrayList<>());
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+
+        var processor = new KeyOrderedProcessor(2, 16, KeyOrderedProcessor.byHeader("key"), msg -> {
+            Thread.sleep(5);
+            handled.add(new String(msg.getData()));
+        });
+
+        // as an async consumer with reuseMessages does: the batch is
+        // cleared and refilled as soon as the callback returns
+        MessageBatch batch = new MessageBatch();
+        for(int round = 0; round < 2; round++) {
+            for(int i = 0; i < 4; i++) {
+                String body = String.valueOf(round * 4 + i);
+                batch.add(new RecordingMessage(1, "key", body, acks), "group");
+            }
+            processor.accept(batch.messages());
+            batch.clear();
+        }
+        processor.close();
+
+        assertEquals(handled, List.of("0", "1", "2", "3", "4", "5", "6", "7"));
+        assertEquals(acks, List.of("0", "1", "2", "3", "4", "5", "6", "7"));
+    }
+}
@@ -0,0 +1,53 @@
+package dev.memphis.sdk.consumer;
+
+import io.nats.client.JetStreamManagement;
+import io.nats.client.api.ConsumerInfo;
+import io.nats.client.support.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LagTrackerTest {
+    private static ConsumerInfo info(long pending, long ackPending, long redelivered, long delivered) {
+        return new ConsumerInfo(JsonParser.parseUnchecked(String.format(
+                "{\"num_pending\":%d,\"num_ack_pending\":%d,\"num_redelivered\":%d,\"delivered\":{\"stream_seq\":%d,\"consumer_seq\":%d}}",
+                pending, ackPending, redelivered, delivered, delivered)));
+    }
+
+    @Test
+    public void reportsLagFromKeepAlives() throws Exception {
+        Map<String, ConsumerInfo> infos = Map.of("orders$1", info(5, 2, 1, 40), "orders$2", info(7, 0, 3, 90));
+        var jsm = (JetStreamManagement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{JetStreamManagement.class},
+                (proxy, method, args) -> infos.get((String) args[0]));
+        var executor = Executors.newSingleThreadScheduledExecutor();
+        var service = new KeepAliveService(jsm, executor, Duration.ofMillis(1), null);
+
+        CompletableFuture<ConsumerLag> pushed = new CompletableFuture<>();
+        var tracker = new LagTracker(service, "orders", "group", Map.of(1, "orders$1", 2, "orders$2"), lag -> {
+            if(lag.partitions.size() == 2) {
+                pushed.complete(lag);
+            }
+        });
+        assertEquals(tracker.lag().partitions.size(), 0);
+        tracker.register(1);
+        tracker.register(2);
+
+        ConsumerLag lag = pushed.get(10, TimeUnit.SECONDS);
+        assertEquals(lag.pending, 12);
+        assertEquals(lag.ackPending, 2);
+        assertEquals(lag.redelivered, 4);
+        assertEquals(tracker.lag().partitions.get(1).lastDeliveredSequence, 90);
+
+        tracker.unregister(1);
+        tracker.unregister(2);
+        service.close();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,39 @@
+package dev.memphis.sdk.consumer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MemoryBudgetTest {
+    @Test
+    public void unlimitedBudgetPassesRequestsThrough() {
+        var budget = new MemoryBudget(0, null);
+        assertEquals(budget.reserve(0), 0);
+        assertEquals(budget.reserve(4096), 4096);
+        assertEquals(budget.getReserved(), 0);
+    }
+
+    @Test
+    public void reservationsFitInConsumerAndConnectionBudgets() {
+        var connection = new MemoryBudget(8000, null);
+        var consumer = new MemoryBudget(0, connection);
+
+        // pulls without a size take an eighth of the connection budget
+        for(int i = 0; i < 8; i++) {
+            assertEquals(consumer.reserve(0), 1000);
+        }
+        assertEquals(consumer.reserve(0), -1);
+        assertEquals(connection.getReserved(), 8000);
+
+        consumer.release(1000);
+        assertEquals(consumer.reserve(500), 500);
+        assertEquals(consumer.reserve(500), 500);
+        assertEquals(consumer.reserve(1), -1);
+
+        var limited = new MemoryBudget(300, connection);
+        connection.release(2000);
+        assertEquals(limited.reserve(1000), 300);
+        assertEquals(limited.reserve(0), -1);
+        assertEquals(connection.getReserved(), 6300);
+    }
+}
@@ -0,0 +1,213 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.ClientOptions;
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.JetStream;
+import io.nats.client.JetStreamManagement;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MemphisAsyncConsumerTest {
+    private static final Duration MAX_WAIT_TIME = Duration.ofMillis(20);
+
+    private final List<String> subscribed = new ArrayList<>();
+    private final List<String> unsubscribed = new ArrayList<>();
+    private final List<Integer> pulled = new ArrayList<>();
+    private final List<Integer> delivered = new ArrayList<>();
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> callbacks = new ConcurrentLinkedQueue<>();
+    private boolean answerPulls = false;
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(MemphisAsyncConsumerTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Pull subscriptions named after their stream and the order they were
+     * created in.  Pulls get no messages, unless answerPulls is set: then
+     * every message asked for has arrived when the pull returns.
+     */
+    private final JetStream jetStream = stub(JetStream.class, (proxy, method, args) -> {
+        String name = args[0] + "#" + subscribed.size();
+        subscribed.add(name);
+        Queue<Message> arrived = new ArrayDeque<>();
+        return stub(JetStreamSubscription.class, (sub, subMethod, subArgs) -> {
+            switch(subMethod.getName()) {
+                case "pullExpiresIn":
+                    int count = (Integer) subArgs[0];
+                    pulled.add(count);
+                    for(int i = 0; answerPulls && i < count; i++) {
+                        arrived.add(new NatsMessage((String) args[0], null, new byte[1]));
+                    }
+                    return null;
+                case "getPendingMessageCount":
+                    return (long) arrived.size();
+                case "nextMessage":
+                    return arrived.poll();
+                case "unsubscribe":
+                    unsubscribed.add(name);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    });
+
+    private final JetStreamManagement jsm = stub(JetStreamManagement.class, (proxy, method, args) -> {
+        throw new UnsupportedOperationException(method.getName());
+    });
+
+    private final Connection connection = stub(Connection.class, (proxy, method, args) -> {
+        switch(method.getName()) {
+            case "jetStream":
+                return jetStream;
+            case "jetStreamManagement":
+                return jsm;
+            case "createDispatcher":
+                return stub(Dispatcher.class, (dispatcher, dispatcherMethod, dispatcherArgs) -> null);
+            default:
+                return null;
+        }
+    });
+
+    private final ScheduledExecutorService keepAliveExecutor = stub(ScheduledExecutorService.class, (proxy, method, args) ->
+            stub(ScheduledFuture.class, (future, futureMethod, futureArgs) -> futureMethod.getName().equals("cancel") ? true : null));
+
+    /**
+     * An executor that keeps every task for the test to run.
+     */
+    private final ScheduledExecutorService scheduler = stub(ScheduledExecutorService.class, (proxy, method, args) -> {
+        if(method.getName().equals("schedule")) {
+            tasks.add((Runnable) args[0]);
+        }
+        return stub(ScheduledFuture.class, (future, futureMethod, futureArgs) -> futureMethod.getName().equals("cancel") ? true : null);
+    });
+
+    /**
+     * Runs the tasks scheduled so far, but not those they schedule.
+     */
+    private void runTasks() {
+        for(int i = tasks.size(); i > 0; i--) {
+            tasks.poll().run();
+        }
+    }
+
+    private MemphisAsyncConsumer consumer(List<Integer> partitions) throws Exception {
+        return consumer(new ClientOptions.Builder(), partitions);
+    }
+
+    /**
+     * A consumer whose callbacks run when the test runs them.
+     */
+    private MemphisAsyncConsumer consumer(ClientOptions.Builder options, List<Integer> partitions) throws Exception {
+        ClientOptions clientOptions = options
+                .host("localhost")
+                .username("user")
+                .connectionToken("token")
+                .maxWaitTime(MAX_WAIT_TIME)
+                .build();
+        ConsumerOptions consumerOptions = new ConsumerOptions.Builder()
+                .stationName("station")
+                .consumerName("consumer")
+                .build();
+        return new MemphisAsyncConsumer(connection, clientOptions, consumerOptions, partitions, messages -> delivered.add(messages.size()), scheduler, callbacks::add,
+                new KeepAliveService(jsm, keepAliveExecutor, Duration.ofSeconds(30), null), null, new PartitionsUpdateSubscriber(connection));
+    }
+
+    private void runCallbacks() {
+        Runnable callback;
+        while((callback = callbacks.poll()) != null) {
+            callback.run();
+        }
+    }
+
+    @Test
+    public void prefetchesNextBatchWhileCallbackRuns() throws Exception {
+        answerPulls = true;
+        consumer(new ClientOptions.Builder().batchSize(5).prefetch(true), List.of(1)).start();
+
+        runTasks();
+        // the next batch is pulled before the callback had the first one
+        assertEquals(pulled, List.of(5, 5));
+        assertEquals(delivered, List.of());
+
+        runCallbacks();
+        assertEquals(delivered, List.of(5));
+        runTasks();
+        assertEquals(pulled, List.of(5, 5, 5));
+        runCallbacks();
+        assertEquals(delivered, List.of(5, 5));
+    }
+
+    @Test
+    public void withoutPrefetchPullsAfterCallbackReturns() throws Exception {
+        answerPulls = true;
+        consumer(new ClientOptions.Builder().batchSize(5).pullInterval(Duration.ZERO), List.of(1)).start();
+
+        runTasks();
+        assertEquals(pulled, List.of(5));
+        runTasks();
+        assertEquals(pulled, List.of(5));
+
+        runCallbacks();
+        assertEquals(delivered, List.of(5));
+        runTasks();
+        assertEquals(pulled, List.of(5, 5));
+    }
+
+    @Test
+    public void unsubscribesEveryRetiredFetcherOfAPartition() throws Exception {
+        var consumer = consumer(List.of(1));
+        consumer.start();
+        runTasks();
+
+        // the partition is removed, added back and removed again while
+        // the first fetcher's pull is still open
+        consumer.updatePartitions(List.of());
+        consumer.updatePartitions(List.of(1));
+        runTasks();
+        consumer.updatePartitions(List.of());
+        assertEquals(unsubscribed, List.of());
+
+        // the open pulls expire and are handed to the callback, then the
+        // fetchers stop
+        Thread.sleep(MAX_WAIT_TIME.toMillis() * 2);
+        runTasks();
+        runCallbacks();
+        runTasks();
+        assertEquals(subscribed, List.of("station$1.final#0", "station$1.final#1"));
+        assertEquals(unsubscribed, List.of("station$1.final#0", "station$1.final#1"));
+        assertEquals(consumer.getBatchSizes(), Map.of());
+    }
+
+    @Test
+    public void stopUnsubscribesRetiringFetchers() throws Exception {
+        var consumer = consumer(List.of(1, 2));
+        consumer.start();
+        runTasks();
+
+        consumer.updatePartitions(List.of(2));
+        consumer.stop();
+        runTasks();
+
+        assertEquals(unsubscribed.size(), 2);
+    }
+}
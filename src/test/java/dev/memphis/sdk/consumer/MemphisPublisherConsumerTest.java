@@ -0,0 +1,269 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.ClientOptions;
+import dev.memphis.sdk.MemphisMessage;
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.JetStream;
+import io.nats.client.JetStreamManagement;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import io.nats.client.support.PullStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemphisPublisherConsumerTest {
+    private static final long DELIVERY_DELAY_MS = 20;
+
+    private final List<Integer> pulled = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger unsubscribed = new AtomicInteger();
+    private final AtomicInteger scheduled = new AtomicInteger();
+    private final ScheduledThreadPoolExecutor broker = new ScheduledThreadPoolExecutor(1);
+
+    /**
+     * Counts the delayed tasks, so that the tests can tell that the
+     * consumer does not poll.  execute() schedules without a delay.
+     */
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1) {
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            if(delay > 0) {
+                scheduled.incrementAndGet();
+            }
+            return super.schedule(command, delay, unit);
+        }
+    };
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(MemphisPublisherConsumerTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Message message(String body) {
+        return stub(Message.class, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "getData":
+                    return body.getBytes();
+                case "hasHeaders":
+                    return false;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * A pull subscription to a partition that always has messages: each
+     * pull is answered with as many messages as it asks for, after a delay.
+     */
+    private JetStreamSubscription subscription() {
+        BlockingQueue<Message> arrived = new LinkedBlockingQueue<>();
+        AtomicInteger sequence = new AtomicInteger();
+        return stub(JetStreamSubscription.class, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "pullExpiresIn":
+                    int count = (Integer) args[0];
+                    pulled.add(count);
+                    broker.schedule(() -> {
+                        for(int i = 0; i < count; i++) {
+                            arrived.add(message(String.valueOf(sequence.incrementAndGet())));
+                        }
+                    }, DELIVERY_DELAY_MS, TimeUnit.MILLISECONDS);
+                    return null;
+                case "nextMessage":
+                    return arrived.poll(((Duration) args[0]).toNanos(), TimeUnit.NANOSECONDS);
+                case "getPendingMessageCount":
+                    return (long) arrived.size();
+                case "getPullStatus":
+                    return new PullStatus(0, 0, false);
+                case "unsubscribe":
+                    unsubscribed.incrementAndGet();
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private final JetStream jetStream = stub(JetStream.class, (proxy, method, args) -> subscription());
+
+    private final JetStreamManagement jsm = stub(JetStreamManagement.class, (proxy, method, args) -> {
+        throw new UnsupportedOperationException(method.getName());
+    });
+
+    private final Connection connection = stub(Connection.class, (proxy, method, args) -> {
+        switch(method.getName()) {
+            case "jetStream":
+                return jetStream;
+            case "createDispatcher":
+                return stub(Dispatcher.class, (dispatcher, dispatcherMethod, dispatcherArgs) -> null);
+            default:
+                return null;
+        }
+    });
+
+    private final ScheduledExecutorService keepAliveExecutor = stub(ScheduledExecutorService.class, (proxy, method, args) ->
+            stub(ScheduledFuture.class, (future, futureMethod, futureArgs) -> futureMethod.getName().equals("cancel") ? true : null));
+
+    /**
+     * A subscriber that records what it is sent and requests nothing by itself.
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<MemphisMessage> {
+        private final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch subscribed = new CountDownLatch(1);
+        private final CountDownLatch failed = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscribed.countDown();
+        }
+
+        @Override
+        public void onNext(MemphisMessage item) {
+            received.add(new String(item.getData()));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            failed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        private void awaitReceived(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(received.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    private MemphisPublisherConsumer consumer(List<Integer> partitions) throws Exception {
+        ClientOptions clientOptions = new ClientOptions.Builder()
+                .host("localhost")
+                .username("user")
+                .connectionToken("token")
+                .build();
+        ConsumerOptions consumerOptions = new ConsumerOptions.Builder()
+                .stationName("station")
+                .consumerName("consumer")
+                .build();
+        return new MemphisPublisherConsumer(connection, clientOptions, consumerOptions, partitions, scheduler,
+                new KeepAliveService(jsm, keepAliveExecutor, Duration.ofSeconds(30), null), null,
+                new PartitionsUpdateSubscriber(connection));
+    }
+
+    @AfterEach
+    public void shutdown() {
+        broker.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void pullsAndDeliversOnlyWhatWasRequested() throws Exception {
+        var subscriber = new RecordingSubscriber();
+        consumer(List.of(1)).subscribe(subscriber);
+        subscriber.subscribed.await();
+
+        subscriber.subscription.request(3);
+        subscriber.awaitReceived(3);
+        Thread.sleep(100);
+        assertEquals(subscriber.received, List.of("1", "2", "3"));
+        assertEquals(pulled, List.of(3));
+
+        subscriber.subscription.request(2);
+        subscriber.awaitReceived(5);
+        Thread.sleep(100);
+        assertEquals(subscriber.received, List.of("1", "2", "3", "4", "5"));
+        assertEquals(pulled, List.of(3, 2));
+        // messages arriving later than the drain were awaited, not polled for
+        assertEquals(scheduled.get(), 0);
+    }
+
+    @Test
+    public void spreadsDemandOverPartitions() throws Exception {
+        var subscriber = new RecordingSubscriber();
+        consumer(List.of(1, 2)).subscribe(subscriber);
+        subscriber.subscribed.await();
+
+        subscriber.subscription.request(4);
+        subscriber.awaitReceived(4);
+        Thread.sleep(100);
+        assertEquals(subscriber.received.size(), 4);
+        assertEquals(pulled, List.of(2, 2));
+    }
+
+    @Test
+    public void cancelReleasesTheConsumer() throws Exception {
+        var subscriber = new RecordingSubscriber();
+        consumer(List.of(1, 2)).subscribe(subscriber);
+        subscriber.subscribed.await();
+        subscriber.subscription.request(1);
+        subscriber.awaitReceived(1);
+
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(10);
+        Thread.sleep(100);
+
+        assertEquals(subscriber.received.size(), 1);
+        assertEquals(unsubscribed.get(), 2);
+        assertEquals(subscriber.failed.getCount(), 1);
+    }
+
+    @Test
+    public void nonPositiveRequestSignalsError() throws Exception {
+        var subscriber = new RecordingSubscriber();
+        consumer(List.of(1)).subscribe(subscriber);
+        subscriber.subscribed.await();
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.failed.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, subscriber.error);
+        assertEquals(unsubscribed.get(), 1);
+        assertEquals(pulled, List.of());
+    }
+
+    @Test
+    public void rejectsSecondSubscriber() throws Exception {
+        var consumer = consumer(List.of(1));
+        var first = new RecordingSubscriber();
+        var second = new RecordingSubscriber();
+        consumer.subscribe(first);
+        consumer.subscribe(second);
+
+        assertTrue(second.failed.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, second.error);
+        assertEquals(first.failed.getCount(), 1);
+
+        first.subscription.request(1);
+        first.awaitReceived(1);
+        assertEquals(first.received, List.of("1"));
+    }
+}
@@ -0,0 +1,138 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.ClientOptions;
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.JetStream;
+import io.nats.client.JetStreamApiException;
+import io.nats.client.JetStreamManagement;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.PushSubscribeOptions;
+import io.nats.client.api.ConsumerInfo;
+import io.nats.client.api.DeliverPolicy;
+import io.nats.client.api.StreamInfo;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemphisPushConsumerTest {
+    private final Set<String> existing = new HashSet<>();
+    private final Map<String, PushSubscribeOptions> subscribed = new TreeMap<>();
+    private boolean createdConcurrently = false;
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(MemphisPushConsumerTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static ConsumerInfo response(String json) throws Exception {
+        return new ConsumerInfo(new NatsMessage("info", null, json.getBytes()));
+    }
+
+    /**
+     * Consumer info of the push consumers in existing, and stream info
+     * with 100 messages for every stream.
+     */
+    private final JetStreamManagement jsm = stub(JetStreamManagement.class, (proxy, method, args) -> {
+        switch(method.getName()) {
+            case "getConsumerInfo":
+                if(!existing.contains((String) args[0])) {
+                    throw new JetStreamApiException(response("{\"error\":{\"code\":404,\"err_code\":10014,\"description\":\"consumer not found\"}}"));
+                }
+                return response("{\"stream_name\":\"" + args[0] + "\",\"name\":\"" + args[1] + "\"}");
+            case "getStreamInfo":
+                String json = "{\"config\":{\"name\":\"" + args[0] + "\"},\"state\":{\"messages\":100,\"first_seq\":1,\"last_seq\":100}}";
+                return new StreamInfo(new NatsMessage("info", null, json.getBytes()));
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    });
+
+    /**
+     * Records the options of every subscription.  Creating a push consumer
+     * fails when createdConcurrently is set, as if another member of the
+     * group had just created it with another start sequence.
+     */
+    private final JetStream jetStream = stub(JetStream.class, (proxy, method, args) -> {
+        PushSubscribeOptions options = (PushSubscribeOptions) args[5];
+        if(!options.isBind() && createdConcurrently) {
+            existing.add(options.getStream());
+            throw new JetStreamApiException(response("{\"error\":{\"code\":500,\"err_code\":10013,\"description\":\"consumer name already in use\"}}"));
+        }
+        subscribed.put(options.getStream(), options);
+        return stub(JetStreamSubscription.class, (sub, subMethod, subArgs) -> null);
+    });
+
+    private final Connection connection = stub(Connection.class, (proxy, method, args) -> {
+        switch(method.getName()) {
+            case "jetStream":
+                return jetStream;
+            case "jetStreamManagement":
+                return jsm;
+            case "createDispatcher":
+                return stub(Dispatcher.class, (dispatcher, dispatcherMethod, dispatcherArgs) -> null);
+            default:
+                return null;
+        }
+    });
+
+    private final ScheduledExecutorService executor = stub(ScheduledExecutorService.class, (proxy, method, args) ->
+            stub(ScheduledFuture.class, (future, futureMethod, futureArgs) -> futureMethod.getName().equals("cancel") ? true : null));
+
+    private MemphisPushConsumer consumer(ConsumerOptions.Builder options) throws Exception {
+        ClientOptions clientOptions = new ClientOptions.Builder()
+                .host("localhost")
+                .username("user")
+                .connectionToken("token")
+                .build();
+        return new MemphisPushConsumer(connection, clientOptions, options.stationName("station").consumerName("consumer").build(),
+                List.of(1, 2), messages -> {}, executor, null, new KeepAliveService(jsm, executor, Duration.ofSeconds(30), null),
+                new PartitionsUpdateSubscriber(connection));
+    }
+
+    @Test
+    public void createsMissingPushConsumerFromStartPosition() throws Exception {
+        consumer(new ConsumerOptions.Builder().lastMessages(10)).start();
+
+        assertEquals(subscribed.keySet(), Set.of("station$1", "station$2"));
+        PushSubscribeOptions options = subscribed.get("station$1");
+        assertFalse(options.isBind());
+        assertEquals(options.getDurable(), "consumer_push");
+        assertEquals(options.getConsumerConfiguration().getDeliverPolicy(), DeliverPolicy.ByStartSequence);
+        assertEquals(options.getConsumerConfiguration().getStartSequence(), 91);
+    }
+
+    @Test
+    public void bindsToExistingPushConsumerWithoutConfiguration() throws Exception {
+        existing.add("station$1");
+        consumer(new ConsumerOptions.Builder().lastMessages(10)).start();
+
+        assertTrue(subscribed.get("station$1").isBind());
+        assertEquals(subscribed.get("station$1").getDurable(), "consumer_push");
+        assertEquals(subscribed.get("station$1").getConsumerConfiguration().getStartSequence(), 0);
+        assertFalse(subscribed.get("station$2").isBind());
+    }
+
+    @Test
+    public void bindsWhenAnotherMemberCreatedThePushConsumerFirst() throws Exception {
+        createdConcurrently = true;
+        consumer(new ConsumerOptions.Builder().startConsumeFromSequence(5)).start();
+
+        assertTrue(subscribed.get("station$1").isBind());
+        assertTrue(subscribed.get("station$2").isBind());
+    }
+}
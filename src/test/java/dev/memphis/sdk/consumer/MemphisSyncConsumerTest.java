@@ -0,0 +1,172 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.ClientOptions;
+import dev.memphis.sdk.MemphisException;
+import dev.memphis.sdk.MemphisMessage;
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.JetStream;
+import io.nats.client.JetStreamManagement;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemphisSyncConsumerTest {
+    private static final long DELIVERY_DELAY_MS = 20;
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, AtomicInteger> stock = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor broker = new ScheduledThreadPoolExecutor(1);
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(MemphisSyncConsumerTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * A pull subscription to a partition holding as many messages as its
+     * stock.  Pulls are recorded as "pull station$N count" and answered
+     * after a delay, recorded as "deliver station$N".
+     */
+    private JetStreamSubscription subscription(String subject) {
+        String partition = subject.substring(0, subject.indexOf('.'));
+        AtomicInteger available = stock.computeIfAbsent(partition, key -> new AtomicInteger());
+        BlockingQueue<Message> arrived = new LinkedBlockingQueue<>();
+        return stub(JetStreamSubscription.class, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "pullExpiresIn":
+                    int count = (Integer) args[0];
+                    events.add("pull " + partition + " " + count);
+                    broker.schedule(() -> {
+                        events.add("deliver " + partition);
+                        for(int i = 0; i < count && available.getAndDecrement() > 0; i++) {
+                            arrived.add(new NatsMessage(subject, null, partition.getBytes()));
+                        }
+                    }, DELIVERY_DELAY_MS, TimeUnit.MILLISECONDS);
+                    return null;
+                case "nextMessage":
+                    return arrived.poll(((Duration) args[0]).toNanos(), TimeUnit.NANOSECONDS);
+                case "getPendingMessageCount":
+                    return (long) arrived.size();
+                case "unsubscribe":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private final JetStream jetStream = stub(JetStream.class, (proxy, method, args) -> subscription((String) args[0]));
+
+    private final JetStreamManagement jsm = stub(JetStreamManagement.class, (proxy, method, args) -> {
+        throw new UnsupportedOperationException(method.getName());
+    });
+
+    private final Connection connection = stub(Connection.class, (proxy, method, args) -> {
+        switch(method.getName()) {
+            case "jetStream":
+                return jetStream;
+            case "createDispatcher":
+                return stub(Dispatcher.class, (dispatcher, dispatcherMethod, dispatcherArgs) -> null);
+            default:
+                return null;
+        }
+    });
+
+    private final ScheduledExecutorService keepAliveExecutor = stub(ScheduledExecutorService.class, (proxy, method, args) ->
+            stub(ScheduledFuture.class, (future, futureMethod, futureArgs) -> futureMethod.getName().equals("cancel") ? true : null));
+
+    private MemphisSyncConsumer consumer(List<Integer> partitions) throws Exception {
+        ClientOptions clientOptions = new ClientOptions.Builder()
+                .host("localhost")
+                .username("user")
+                .connectionToken("token")
+                .build();
+        ConsumerOptions consumerOptions = new ConsumerOptions.Builder()
+                .stationName("station")
+                .consumerName("consumer")
+                .build();
+        return new MemphisSyncConsumer(connection, clientOptions, consumerOptions, partitions,
+                new KeepAliveService(jsm, keepAliveExecutor, Duration.ofSeconds(30), null), null,
+                new PartitionsUpdateSubscriber(connection));
+    }
+
+    @AfterEach
+    public void shutdown() {
+        broker.shutdownNow();
+    }
+
+    @Test
+    public void pullsEveryPartitionBeforeAnyMessageArrives() throws Exception {
+        stock.put("station$1", new AtomicInteger(10));
+        stock.put("station$2", new AtomicInteger(10));
+        stock.put("station$3", new AtomicInteger(10));
+        var consumer = consumer(List.of(1, 2, 3));
+
+        List<MemphisMessage> messages = consumer.fetch(6, Duration.ofSeconds(5));
+
+        assertEquals(messages.size(), 6);
+        assertEquals(events.subList(0, 3), List.of("pull station$1 2", "pull station$2 2", "pull station$3 2"));
+        consumer.destroy();
+    }
+
+    @Test
+    public void renewsPullsForMessagesStillNeeded() throws Exception {
+        stock.put("station$2", new AtomicInteger(10));
+        var consumer = consumer(List.of(1, 2));
+
+        List<MemphisMessage> messages = consumer.fetch(4, Duration.ofSeconds(5));
+
+        assertEquals(messages.size(), 4);
+        messages.forEach(message -> assertEquals(new String(message.getData()), "station$2"));
+        List<String> pulls = new ArrayList<>(events);
+        pulls.removeIf(event -> !event.startsWith("pull"));
+        // the empty partition keeps its first pull open; the other one is
+        // asked for the rest as its pulls complete
+        assertEquals(pulls, List.of("pull station$1 2", "pull station$2 2", "pull station$2 1", "pull station$2 1"));
+        consumer.destroy();
+    }
+
+    @Test
+    public void returnsWhatArrivedWhenTimeoutExpires() throws Exception {
+        stock.put("station$1", new AtomicInteger(1));
+        var consumer = consumer(List.of(1, 2));
+
+        long start = System.nanoTime();
+        List<MemphisMessage> messages = consumer.fetch(5, Duration.ofMillis(200));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(messages.size(), 1);
+        assertTrue(elapsedMs >= 190, "returned after " + elapsedMs + " ms");
+        consumer.destroy();
+    }
+
+    @Test
+    public void rejectsNonPositiveMaxMessages() throws Exception {
+        var consumer = consumer(List.of(1));
+        assertThrows(MemphisException.class, () -> consumer.fetch(0, Duration.ofSeconds(1)));
+        assertTrue(events.isEmpty());
+    }
+}
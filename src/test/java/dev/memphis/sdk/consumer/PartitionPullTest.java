@@ -0,0 +1,74 @@
+package dev.memphis.sdk.consumer;
+
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.PullRequestOptions;
+import io.nats.client.support.PullStatus;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionPullTest {
+    private static final long EXPIRES_IN_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final List<String> pulls = new ArrayList<>();
+    private long pendingMessages = 0;
+
+    /**
+     * A subscription that records its pull requests as "batch/max_bytes"
+     * and reports pendingMessages as its pull status.
+     */
+    private final JetStreamSubscription sub = (JetStreamSubscription) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{JetStreamSubscription.class}, (proxy, method, args) -> {
+                switch(method.getName()) {
+                    case "pull":
+                        PullRequestOptions options = (PullRequestOptions) args[0];
+                        pulls.add(options.getBatchSize() + "/" + options.getMaxBytes());
+                        return null;
+                    case "pullExpiresIn":
+                        pulls.add(args[0] + "/0");
+                        return null;
+                    case "getPullStatus":
+                        return new PullStatus(pendingMessages, 0, false);
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+    @Test
+    public void pullsSingleMessageAfterMaxBytesRefusedTheFirst() {
+        var budget = new MemoryBudget(8000, null);
+        var pull = new PartitionPull(sub, budget, 0);
+
+        assertTrue(pull.start(10, EXPIRES_IN_NANOS));
+        // the broker ends the pull: the next message exceeds its 1000 bytes
+        pendingMessages = 0;
+        assertFalse(pull.isOpen(System.nanoTime()));
+        assertEquals(budget.getReserved(), 0);
+
+        assertTrue(pull.start(10, EXPIRES_IN_NANOS));
+        assertEquals(budget.getReserved(), 1000);
+        pendingMessages = 1;
+        assertTrue(pull.isOpen(System.nanoTime()));
+
+        assertEquals(pulls, List.of("10/1000", "1/0"));
+    }
+
+    @Test
+    public void keepsMaxBytesAfterPullExpires() {
+        var budget = new MemoryBudget(8000, null);
+        var pull = new PartitionPull(sub, budget, 0);
+
+        assertTrue(pull.start(10, 0));
+        assertFalse(pull.isOpen(System.nanoTime()));
+        assertTrue(pull.start(10, EXPIRES_IN_NANOS));
+
+        assertEquals(pulls, List.of("10/1000", "10/1000"));
+    }
+}
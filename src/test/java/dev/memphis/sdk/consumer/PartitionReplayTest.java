@@ -0,0 +1,131 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.MemphisMessage;
+import io.nats.client.JetStream;
+import io.nats.client.JetStreamManagement;
+import io.nats.client.JetStreamSubscription;
+import io.nats.client.Message;
+import io.nats.client.api.ConsumerInfo;
+import io.nats.client.impl.NatsMessage;
+import io.nats.client.support.PullStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PartitionReplayTest {
+    private static final long NANOS = 1690000000123456789L;
+    private static final int STORED = 10;
+
+    private final List<String> deleted = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger unsubscribed = new AtomicInteger();
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(PartitionReplayTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * An ephemeral pull subscription to a partition storing the messages
+     * of sequences 1 to STORED, answering each pull at once.
+     */
+    private JetStreamSubscription subscription() {
+        Queue<Message> arrived = new ArrayDeque<>();
+        AtomicInteger sequence = new AtomicInteger();
+        return stub(JetStreamSubscription.class, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "getConsumerInfo":
+                    String json = "{\"stream_name\":\"station$1\",\"name\":\"replay\",\"num_pending\":" + STORED + "}";
+                    return new ConsumerInfo(new NatsMessage("info", null, json.getBytes()));
+                case "pullExpiresIn":
+                    for(int i = 0; i < (Integer) args[0] && sequence.get() < STORED; i++) {
+                        int seq = sequence.incrementAndGet();
+                        arrived.add(new ReplayPositionTest.StationMessage(seq, NANOS + seq, String.valueOf(seq)));
+                    }
+                    return null;
+                case "nextMessage":
+                    return arrived.poll();
+                case "getPendingMessageCount":
+                    return (long) arrived.size();
+                case "getPullStatus":
+                    return new PullStatus(0, 0, false);
+                case "unsubscribe":
+                    unsubscribed.incrementAndGet();
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private final JetStream jetStream = stub(JetStream.class, (proxy, method, args) -> subscription());
+
+    private final JetStreamManagement jsm = stub(JetStreamManagement.class, (proxy, method, args) -> {
+        if(!method.getName().equals("deleteConsumer")) {
+            throw new UnsupportedOperationException(method.getName());
+        }
+        deleted.add(args[0] + "/" + args[1]);
+        return true;
+    });
+
+    private PartitionReplay replay(ReplayPosition until, MemphisConsumerCallback callback) throws Exception {
+        return new PartitionReplay(jetStream, jsm, "station$1.final", ReplayPosition.ofSequence(1), until, 4, Duration.ofSeconds(5),
+                "group", callback, scheduler, null, new MemoryBudget(0, null), 0);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void deliversRangeUpToInclusiveEndThenDeletesConsumer() throws Exception {
+        List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        var replay = replay(ReplayPosition.ofSequence(6), messages -> {
+            for(MemphisMessage message : messages) {
+                sequences.add(message.getSequence());
+            }
+        });
+
+        replay.start().get(5, TimeUnit.SECONDS);
+
+        assertEquals(sequences, List.of(1L, 2L, 3L, 4L, 5L, 6L));
+        assertEquals(unsubscribed.get(), 1);
+        assertEquals(deleted, List.of("station$1/replay"));
+    }
+
+    @Test
+    public void deliversEverythingPendingWithoutEnd() throws Exception {
+        AtomicInteger delivered = new AtomicInteger();
+        var replay = replay(null, messages -> delivered.addAndGet(messages.size()));
+
+        replay.start().get(5, TimeUnit.SECONDS);
+
+        assertEquals(delivered.get(), STORED);
+        assertEquals(deleted, List.of("station$1/replay"));
+    }
+
+    @Test
+    public void closeDeletesConsumerOfReplayNotStarted() throws Exception {
+        AtomicInteger delivered = new AtomicInteger();
+        var replay = replay(null, messages -> delivered.addAndGet(messages.size()));
+
+        replay.close();
+
+        assertEquals(unsubscribed.get(), 1);
+        assertEquals(deleted, List.of("station$1/replay"));
+        assertEquals(delivered.get(), 0);
+    }
+}
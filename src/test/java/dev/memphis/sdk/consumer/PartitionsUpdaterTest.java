@@ -0,0 +1,91 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.MemphisException;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionsUpdaterTest {
+    private final List<List<Integer>> applied = new ArrayList<>();
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+    private final List<Boolean> canceled = new ArrayList<>();
+    private int failures = 0;
+
+    /**
+     * An executor that keeps delayed tasks for the test to run.
+     */
+    private final ScheduledExecutorService scheduler = (ScheduledExecutorService) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{ScheduledExecutorService.class}, (proxy, method, args) -> {
+                int index = tasks.size();
+                tasks.add((Runnable) args[0]);
+                delays.add(((TimeUnit) args[2]).toMillis((Long) args[1]));
+                canceled.add(false);
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ScheduledFuture.class},
+                        (future, futureMethod, futureArgs) -> {
+                            if(futureMethod.getName().equals("cancel")) {
+                                canceled.set(index, true);
+                                return true;
+                            }
+                            return null;
+                        });
+            });
+
+    /**
+     * Applies a list, failing the first failures times.
+     */
+    private final PartitionsUpdater updater = new PartitionsUpdater(partitions -> {
+        applied.add(partitions);
+        if(failures > 0) {
+            failures--;
+            throw new MemphisException("cannot subscribe");
+        }
+    }, scheduler);
+
+    @Test
+    public void retriesFailedUpdateWithGrowingDelay() {
+        failures = 7;
+        updater.accept(List.of(1, 2));
+        for(int i = 0; i < 7; i++) {
+            tasks.get(i).run();
+        }
+
+        assertEquals(applied.size(), 8);
+        assertEquals(delays, List.of(1000L, 2000L, 4000L, 8000L, 16000L, 30000L, 30000L));
+        // succeeded: nothing more is scheduled and the delay starts over
+        failures = 1;
+        updater.accept(List.of(1, 2, 3));
+        assertEquals(delays.get(7), 1000L);
+    }
+
+    @Test
+    public void newerUpdateReplacesPendingRetry() {
+        failures = 1;
+        List<Integer> older = List.of(1, 2);
+        updater.accept(older);
+        updater.accept(List.of(1));
+
+        assertTrue(canceled.get(0));
+        tasks.get(0).run();
+        assertEquals(applied, List.of(older, List.of(1)));
+    }
+
+    @Test
+    public void cancelDropsPendingRetry() {
+        failures = 1;
+        updater.accept(List.of(1, 2));
+        updater.cancel();
+
+        assertTrue(canceled.get(0));
+        tasks.get(0).run();
+        assertEquals(applied.size(), 1);
+    }
+}
@@ -0,0 +1,67 @@
+package dev.memphis.sdk.consumer;
+
+import dev.memphis.sdk.MemphisMessage;
+import io.nats.client.impl.NatsJetStreamMetaData;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayPositionTest {
+    private static final long NANOS = 1690000000123456789L;
+
+    /**
+     * A message consumed from a station, whose metadata is read from its
+     * reply subject.
+     */
+    static class StationMessage extends NatsMessage {
+        StationMessage(long sequence, long timestampNanos, String body) {
+            super("station$1.final", "$JS.ACK.station$1.group.1." + sequence + "." + sequence + "." + timestampNanos + ".0",
+                    null, body.getBytes());
+        }
+
+        @Override
+        public boolean isJetStream() {
+            return true;
+        }
+
+        @Override
+        public NatsJetStreamMetaData metaData() {
+            return new NatsJetStreamMetaData(this);
+        }
+    }
+
+    private static MemphisMessage message(long sequence, long timestampNanos) {
+        return new MemphisMessage(new StationMessage(sequence, timestampNanos, ""), "group");
+    }
+
+    @Test
+    public void sequenceIsInclusiveEnd() {
+        var end = ReplayPosition.ofSequence(3);
+
+        assertFalse(end.isPassedBy(message(2, NANOS)));
+        assertFalse(end.isPassedBy(message(3, NANOS)));
+        assertTrue(end.isPassedBy(message(4, NANOS)));
+    }
+
+    @Test
+    public void timeIsInclusiveEnd() {
+        var end = ReplayPosition.ofTime(Instant.ofEpochSecond(0, NANOS));
+
+        assertFalse(end.isPassedBy(message(1, NANOS - 1)));
+        assertFalse(end.isPassedBy(message(2, NANOS)));
+        assertTrue(end.isPassedBy(message(3, NANOS + 1)));
+        // a message without metadata cannot be placed in time
+        assertFalse(end.isPassedBy(new MemphisMessage(new NatsMessage("subject", null, null, new byte[0]), "group")));
+    }
+
+    @Test
+    public void validatesPositions() {
+        assertTrue(ReplayPosition.ofSequence(1).isValid());
+        assertFalse(ReplayPosition.ofSequence(0).isValid());
+        assertTrue(ReplayPosition.ofTime(Instant.EPOCH).isValid());
+    }
+}
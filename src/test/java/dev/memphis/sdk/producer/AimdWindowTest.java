@@ -0,0 +1,40 @@
+package dev.memphis.sdk.producer;
+
+import dev.memphis.sdk.MemphisException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AimdWindowTest {
+    @Test
+    public void growsWhileAcksAreFastAndHalvesOnFailure() throws MemphisException {
+        var window = new AimdWindow(true, 1000, ProducerOptions.BackpressureMode.FAIL_FAST);
+        assertEquals(window.window(), 16);
+
+        // a steady 1 ms RTT, so timer jitter cannot look like rising latency
+        for(int i = 0; i < 1000; i++) {
+            window.acquire(false);
+            window.release(System.nanoTime() - 1_000_000, true);
+        }
+        int grown = window.window();
+        assertTrue(grown > 16, "window did not grow: " + grown);
+
+        window.release(window.acquire(false), false);
+        assertEquals(window.window(), grown / 2, 1);
+    }
+
+    @Test
+    public void failsFastWhenFull() throws MemphisException {
+        var window = new AimdWindow(false, 2, ProducerOptions.BackpressureMode.FAIL_FAST);
+        window.acquire(false);
+        window.acquire(false);
+        assertThrows(MemphisException.class, () -> window.acquire(false));
+
+        window.cancel();
+        window.acquire(false);
+        assertEquals(window.inFlight(), 2);
+        assertEquals(window.window(), 2);
+    }
+}
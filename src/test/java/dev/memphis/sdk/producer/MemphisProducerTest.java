@@ -0,0 +1,133 @@
+package dev.memphis.sdk.producer;
+
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.JetStream;
+import io.nats.client.Message;
+import io.nats.client.MessageHandler;
+import io.nats.client.api.PublishAck;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MemphisProducerTest {
+    private final List<Integer> published = Collections.synchronizedList(new ArrayList<>());
+    private MessageHandler partitionsHandler;
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(MemphisProducerTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static PublishAck ack() throws Exception {
+        return new PublishAck(new NatsMessage("ack", null, "{\"stream\":\"station\",\"seq\":1}".getBytes()));
+    }
+
+    /**
+     * Records the partition of every published message.
+     */
+    private final JetStream jetStream = stub(JetStream.class, (proxy, method, args) -> {
+        published.add(MessageTemplate.partitionOf(((Message) args[0]).getSubject()));
+        switch(method.getName()) {
+            case "publish":
+                return ack();
+            case "publishAsync":
+                return CompletableFuture.completedFuture(ack());
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    });
+
+    private final Dispatcher dispatcher = stub(Dispatcher.class, (proxy, method, args) -> {
+        if(method.getName().equals("subscribe")) {
+            partitionsHandler = (MessageHandler) args[1];
+        }
+        return null;
+    });
+
+    private final Connection connection = stub(Connection.class, (proxy, method, args) -> {
+        switch(method.getName()) {
+            case "jetStream":
+                return jetStream;
+            case "getStatus":
+                return Connection.Status.CONNECTED;
+            case "createDispatcher":
+                return dispatcher;
+            default:
+                return null;
+        }
+    });
+
+    private MemphisProducer producer(List<Integer> partitions) throws Exception {
+        return producer(new ProducerOptions.Builder(), partitions);
+    }
+
+    private MemphisProducer producer(ProducerOptions.Builder options, List<Integer> partitions) throws Exception {
+        return new MemphisProducer(connection, "connection-id", options.stationName("station").producerName("producer").build(),
+                partitions, new PartitionsUpdateSubscriber(connection));
+    }
+
+    private Set<Integer> flowStatsPartitions(MemphisProducer producer) {
+        Set<Integer> partitions = new TreeSet<>();
+        producer.getFlowStats().forEach(stats -> partitions.add(stats.partition));
+        return partitions;
+    }
+
+    @Test
+    public void routesOverPartitionsSentByTheBroker() throws Exception {
+        var producer = producer(List.of(1, 2));
+        for(int i = 0; i < 4; i++) {
+            producer.produce(("" + i).getBytes());
+        }
+        assertEquals(new TreeSet<>(published), Set.of(1, 2));
+        assertEquals(flowStatsPartitions(producer), Set.of(1, 2));
+
+        published.clear();
+        partitionsHandler.onMessage(new NatsMessage("$memphis_partitions_updates_station", null, "{\"partitions_list\":[2,3]}".getBytes()));
+        for(int i = 0; i < 4; i++) {
+            producer.produce(("" + i).getBytes());
+            producer.produceAsync(("" + i).getBytes()).get();
+        }
+        producer.stop();
+
+        assertEquals(new TreeSet<>(published), Set.of(2, 3));
+        assertEquals(flowStatsPartitions(producer), Set.of(2, 3));
+    }
+
+    @Test
+    public void publishToRemovedPartitionDoesNotBringBackItsWindow() throws Exception {
+        // the partitions change between choosing a message's partition and publishing it
+        AtomicReference<MemphisProducer> producer = new AtomicReference<>();
+        AtomicReference<List<Integer>> update = new AtomicReference<>();
+        Partitioner partitioner = (key, payloadSize, numPartitions) -> {
+            List<Integer> partitions = update.getAndSet(null);
+            if(partitions != null) {
+                producer.get().updatePartitions(partitions);
+            }
+            return 0;
+        };
+        producer.set(producer(new ProducerOptions.Builder().partitioner(partitioner), List.of(1, 2)));
+        producer.get().produceAsync("0".getBytes()).get();
+        assertEquals(flowStatsPartitions(producer.get()), Set.of(1, 2));
+
+        update.set(List.of(2));
+        producer.get().produceAsync("1".getBytes()).get();
+        producer.get().stop();
+
+        assertEquals(published, List.of(1, 1));
+        assertEquals(producer.get().windowCount(), 1);
+        assertEquals(flowStatsPartitions(producer.get()), Set.of(2));
+        assertEquals(producer.get().getFlowStats().get(0).inFlight, 0);
+    }
+}
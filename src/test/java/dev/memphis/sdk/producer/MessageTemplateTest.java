@@ -0,0 +1,185 @@
+package dev.memphis.sdk.producer;
+
+import dev.memphis.sdk.MemphisException;
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
+import dev.memphis.sdk.compression.CompressionCodec;
+import dev.memphis.sdk.compression.DeflateCodec;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.JetStream;
+import io.nats.client.api.PublishAck;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MessageTemplateTest {
+    private static final int WARMUP_ROUNDS = 50_000;
+    private static final int MEASURED_ROUNDS = 200_000;
+
+    private final MessageTemplate template = new MessageTemplate("station", "connection-id", "producer", List.of(1, 2, 3));
+    private final byte[] payload = "This is a test.".getBytes();
+
+    @Test
+    public void buildsPrecomputedSubjectsAndSharedHeaders() throws MemphisException {
+        NatsMessage first = template.build(template.subject(0), payload);
+        NatsMessage third = template.build(template.subject(2), payload);
+
+        assertEquals(first.getSubject(), "station$1.final");
+        assertEquals(third.getSubject(), "station$3.final");
+        assertSame(first.getHeaders(), third.getHeaders());
+        assertSame(first.getData(), payload);
+        assertEquals(first.getHeaders().getFirst("$memphis_connectionId"), "connection-id");
+        assertEquals(first.getHeaders().getFirst("$memphis_producedBy"), "producer");
+    }
+
+    @Test
+    public void replacesSubjectsWhenPartitionsChange() {
+        var updating = new MessageTemplate("station", "connection-id", "producer", List.of(1, 2));
+        String[] before = updating.subjects();
+
+        updating.setPartitions(List.of(1, 2, 10));
+
+        assertEquals(before.length, 2);
+        assertEquals(updating.subjects().length, 3);
+        assertEquals(updating.subject(2), "station$10.final");
+        assertEquals(MessageTemplate.partitionOf(updating.subject(2)), 10);
+    }
+
+    @Test
+    public void compressesOnlyAboveThreshold() throws Exception {
+        var codec = new DeflateCodec();
+        var compressing = new MessageTemplate("station", "connection-id", "producer", List.of(1), codec, 64);
+        byte[] large = "abcdefgh".repeat(100).getBytes();
+
+        NatsMessage small = compressing.build(compressing.subject(0), payload);
+        assertSame(small.getData(), payload);
+        assertNull(small.getHeaders().getFirst(CompressionCodec.HEADER));
+
+        NatsMessage compressed = compressing.build(compressing.subject(0), large);
+        assertTrue(compressed.getData().length < large.length);
+        assertEquals(compressed.getHeaders().getFirst(CompressionCodec.HEADER), DeflateCodec.NAME);
+        assertEquals(compressed.getHeaders().getFirst("$memphis_producedBy"), "producer");
+        assertArrayEquals(codec.decompress(compressed.getData()), large);
+    }
+
+    @Test
+    public void buildsFromSlicesAndBuffers() throws MemphisException {
+        byte[] framed = "[This is a test.]".getBytes();
+
+        NatsMessage slice = template.build(template.subject(0), framed, 1, payload.length);
+        assertArrayEquals(slice.getData(), payload);
+
+        ByteBuffer heap = ByteBuffer.wrap(payload);
+        assertSame(template.build(template.subject(0), heap).getData(), payload);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(framed.length).put(framed);
+        direct.position(1).limit(1 + payload.length);
+        assertArrayEquals(template.build(template.subject(0), direct).getData(), payload);
+        assertEquals(direct.position(), 1);
+    }
+
+    @Test
+    public void sharedHeadersAreReadOnly() throws MemphisException {
+        NatsMessage msg = template.build(template.subject(0), payload);
+
+        assertThrows(UnsupportedOperationException.class, () -> msg.getHeaders().put("$memphis_producedBy", "other"));
+        assertThrows(UnsupportedOperationException.class, () -> msg.getHeaders().remove("$memphis_connectionId"));
+        assertEquals(new Headers(msg.getHeaders()).put("key", "value").getFirst("$memphis_producedBy"), "producer");
+        assertEquals(template.build(template.subject(1), payload).getHeaders().getFirst("$memphis_producedBy"), "producer");
+    }
+
+    /**
+     * Compares the bytes allocated per produce() call against the
+     * previous per-message construction of headers and subject, both
+     * published through the same stub JetStream context.  The stub
+     * allocates nothing of its own beyond the reflective call.
+     */
+    @Test
+    public void produceAllocatesLessPerMessage() throws Exception {
+        var threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        var allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+        PublishAck ack = new PublishAck(new NatsMessage("ack", null, "{\"stream\":\"station\",\"seq\":1}".getBytes()));
+        JetStream jetStream = (JetStream) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{JetStream.class}, (proxy, method, args) -> {
+            if(!method.getName().equals("publish") || args.length != 1) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            return ack;
+        });
+        Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "jetStream":
+                    return jetStream;
+                case "getStatus":
+                    return Connection.Status.CONNECTED;
+                case "createDispatcher":
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Dispatcher.class}, (dispatcher, dispatcherMethod, dispatcherArgs) -> null);
+                default:
+                    return null;
+            }
+        });
+        var options = new ProducerOptions.Builder()
+                .stationName("station")
+                .producerName("producer")
+                .build();
+        var producer = new MemphisProducer(connection, "connection-id", options, List.of(1, 2, 3), new PartitionsUpdateSubscriber(connection));
+
+        try {
+            long before = bytesPerMessage(allocationBean, i -> jetStream.publish(buildPerMessage(i)));
+            long after = bytesPerMessage(allocationBean, i -> producer.produce(payload));
+
+            assertTrue(after < before, "expected produce to allocate less than " + before + " bytes, got " + after);
+            assertTrue(after < 1024, "expected produce to allocate less than 1 KB per message, got " + after);
+        } finally {
+            producer.stop();
+        }
+    }
+
+    private NatsMessage buildPerMessage(int i) {
+        var headers = new Headers();
+        headers.put("$memphis_connectionId", "connection-id");
+        headers.put("$memphis_producedBy", "producer");
+
+        int partNum = i % 3 + 1;
+        String partitionName = "station" + "$" + partNum + ".final";
+
+        return NatsMessage.builder()
+                .subject(partitionName)
+                .data(payload)
+                .headers(headers)
+                .build();
+    }
+
+    private interface Publish {
+        PublishAck publish(int i) throws Exception;
+    }
+
+    private static long bytesPerMessage(com.sun.management.ThreadMXBean allocationBean, Publish publish) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        for(int i = 0; i < WARMUP_ROUNDS; i++) {
+            assertEquals(publish.publish(i).getStream(), "station");
+        }
+
+        long start = allocationBean.getThreadAllocatedBytes(threadId);
+        for(int i = 0; i < MEASURED_ROUNDS; i++) {
+            publish.publish(i);
+        }
+        return (allocationBean.getThreadAllocatedBytes(threadId) - start) / MEASURED_ROUNDS;
+    }
+}
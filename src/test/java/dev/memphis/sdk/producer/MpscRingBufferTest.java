@@ -0,0 +1,76 @@
+package dev.memphis.sdk.producer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MpscRingBufferTest {
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(new MpscRingBuffer<Integer>(1).capacity(), 1);
+        assertEquals(new MpscRingBuffer<Integer>(1000).capacity(), 1024);
+        assertEquals(new MpscRingBuffer<Integer>(1024).capacity(), 1024);
+    }
+
+    @Test
+    public void offerFailsWhenFullAndSucceedsAfterPoll() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(2);
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertFalse(buffer.offer(3));
+        assertEquals(buffer.size(), 2);
+
+        assertEquals(buffer.poll(), 1);
+        assertTrue(buffer.offer(3));
+        assertEquals(buffer.poll(), 2);
+        assertEquals(buffer.poll(), 3);
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void manyProducersOneConsumerPreservesEveryElementInProducerOrder() throws InterruptedException {
+        int numProducers = 4;
+        int perProducer = 50_000;
+        MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(64);
+
+        List<Thread> producers = new ArrayList<>();
+        for(int p = 0; p < numProducers; p++) {
+            final int producerId = p;
+            Thread t = new Thread(() -> {
+                try {
+                    for(int i = 0; i < perProducer; i++) {
+                        buffer.offer(new long[] {producerId, i}, 10, TimeUnit.SECONDS);
+                    }
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producers.add(t);
+            t.start();
+        }
+
+        long[] nextExpected = new long[numProducers];
+        int received = 0;
+        while(received < numProducers * perProducer) {
+            long[] element = buffer.poll(10, TimeUnit.SECONDS);
+            if(element == null) {
+                break;
+            }
+            assertEquals(nextExpected[(int) element[0]]++, element[1]);
+            received++;
+        }
+
+        for(Thread t : producers) {
+            t.join();
+        }
+        assertEquals(received, numProducers * perProducer);
+    }
+}
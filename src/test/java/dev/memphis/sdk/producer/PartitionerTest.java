@@ -0,0 +1,68 @@
+package dev.memphis.sdk.producer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PartitionerTest {
+    @Test
+    public void roundRobinIsEvenAcrossThreads() throws InterruptedException {
+        int numPartitions = 5;
+        int numThreads = 4;
+        int perThread = 10_000;
+        Partitioner partitioner = new RoundRobinPartitioner();
+        AtomicIntegerArray counts = new AtomicIntegerArray(numPartitions);
+
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < numThreads; t++) {
+            Thread thread = new Thread(() -> {
+                for(int i = 0; i < perThread; i++) {
+                    counts.incrementAndGet(partitioner.partition(null, 1, numPartitions));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+
+        for(int p = 0; p < numPartitions; p++) {
+            assertEquals(counts.get(p), numThreads * perThread / numPartitions);
+        }
+    }
+
+    @Test
+    public void keyHashIsStablePerKey() {
+        Partitioner partitioner = new KeyHashPartitioner();
+        byte[] key = "order-42".getBytes(StandardCharsets.UTF_8);
+        int first = partitioner.partition(key, 10, 8);
+        for(int i = 0; i < 100; i++) {
+            assertEquals(partitioner.partition(key.clone(), 10, 8), first);
+        }
+    }
+
+    @Test
+    public void murmur3MatchesReferenceVectors() {
+        assertEquals(KeyHashPartitioner.murmur3(new byte[0], 0), 0);
+        assertEquals(KeyHashPartitioner.murmur3(new byte[0], 1), 0x514e28b7);
+        assertEquals(KeyHashPartitioner.murmur3("hello".getBytes(StandardCharsets.UTF_8), 0), 0x248bfa47);
+        assertEquals(KeyHashPartitioner.murmur3("The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8), 0x9747b28c), 0x2fa826cd);
+    }
+
+    @Test
+    public void stickySwitchesWhenBatchFills() {
+        Partitioner partitioner = new StickyPartitioner(100);
+        assertEquals(partitioner.partition(null, 60, 3), 0);
+        assertEquals(partitioner.partition(null, 60, 3), 0);
+        assertEquals(partitioner.partition(null, 60, 3), 1);
+        assertEquals(partitioner.partition(null, 60, 3), 1);
+        assertEquals(partitioner.partition(null, 200, 3), 2);
+        assertEquals(partitioner.partition(null, 1, 3), 0);
+    }
+}
@@ -0,0 +1,90 @@
+package dev.memphis.sdk.producer;
+
+import dev.memphis.sdk.brokerrequests.PartitionsUpdateSubscriber;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.JetStream;
+import io.nats.client.Message;
+import io.nats.client.api.PublishAck;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProduceBatchResultTest {
+    /**
+     * A JetStream context that acknowledges each message with its payload
+     * plus one as stream sequence, fails the ack of "1" and refuses to
+     * publish "3".
+     */
+    private final JetStream jetStream = (JetStream) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{JetStream.class}, (proxy, method, args) -> {
+        if(!method.getName().equals("publishAsync")) {
+            throw new UnsupportedOperationException(method.getName());
+        }
+        String body = new String(((Message) args[0]).getData());
+        switch(body) {
+            case "1":
+                return CompletableFuture.failedFuture(new IllegalStateException("ack timed out"));
+            case "3":
+                throw new IllegalStateException("connection closed");
+            default:
+                String json = "{\"stream\":\"station\",\"seq\":" + (Integer.parseInt(body) + 1) + "}";
+                return CompletableFuture.completedFuture(new PublishAck(new NatsMessage("ack", null, json.getBytes())));
+        }
+    });
+
+    private final Dispatcher dispatcher = (Dispatcher) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Dispatcher.class},
+            (proxy, method, args) -> null);
+
+    private final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+        switch(method.getName()) {
+            case "jetStream":
+                return jetStream;
+            case "getStatus":
+                return Connection.Status.CONNECTED;
+            case "createDispatcher":
+                return dispatcher;
+            default:
+                return null;
+        }
+    });
+
+    @Test
+    public void reportsEachFailedMessageByPosition() throws Exception {
+        var options = new ProducerOptions.Builder()
+                .stationName("station")
+                .producerName("producer")
+                .build();
+        var producer = new MemphisProducer(connection, "connection-id", options, List.of(1), new PartitionsUpdateSubscriber(connection));
+
+        ProduceBatchResult result = producer.produceBatch(List.of("0".getBytes(), "1".getBytes(), "2".getBytes(), "3".getBytes(), "4".getBytes()));
+        producer.stop();
+
+        assertFalse(result.isSuccess());
+        assertEquals(result.size(), 5);
+        assertEquals(result.getSuccessCount(), 3);
+        assertEquals(result.getFailureCount(), 2);
+        assertEquals(result.getFailures().keySet(), Set.of(1, 3));
+        assertTrue(result.getFailures().get(1).getMessage().contains("ack timed out"));
+        assertTrue(result.getFailures().get(3).getMessage().contains("connection closed"));
+
+        assertEquals(result.getAcks().get(0).getSeqno(), 1);
+        assertNull(result.getAcks().get(1));
+        assertEquals(result.getAcks().get(2).getSeqno(), 3);
+        assertNull(result.getAcks().get(3));
+        assertEquals(result.getAcks().get(4).getSeqno(), 5);
+
+        // failed messages take no part in the sequence range
+        assertEquals(result.getFirstSequences(), Map.of(1, 1L));
+        assertEquals(result.getLastSequences(), Map.of(1, 5L));
+    }
+}
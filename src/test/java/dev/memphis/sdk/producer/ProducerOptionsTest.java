@@ -0,0 +1,67 @@
+package dev.memphis.sdk.producer;
+
+import dev.memphis.sdk.MemphisException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProducerOptionsTest {
+    @Test
+    public void defaults() throws MemphisException {
+        ProducerOptions opts = new ProducerOptions.Builder()
+                .stationName("station")
+                .producerName("producer")
+                .build();
+        assertEquals(opts.queueSize, 1000);
+        assertEquals(opts.maxInFlight, 1000);
+        assertEquals(opts.backpressureMode, ProducerOptions.BackpressureMode.BLOCK);
+        assertEquals(opts.lingerMs, 0);
+        assertEquals(opts.maxBatchBytes, 1024 * 1024);
+    }
+
+    @Test
+    public void missingProducerName() {
+        ProducerOptions.Builder builder = new ProducerOptions.Builder()
+                .stationName("station");
+
+        MemphisException e = assertThrows(MemphisException.class, builder::build);
+        assertEquals(e.getMessage(), "Producer name must be set.");
+    }
+
+    @Test
+    public void invalidMaxInFlight() {
+        ProducerOptions.Builder builder = new ProducerOptions.Builder()
+                .stationName("station")
+                .producerName("producer")
+                .maxInFlight(0);
+
+        assertThrows(MemphisException.class,
+                builder::build,
+                "Expected ProducerOptions.Builder.build() to throw MemphisException if maxInFlight is less than one");
+    }
+
+    @Test
+    public void negativeLinger() {
+        ProducerOptions.Builder builder = new ProducerOptions.Builder()
+                .stationName("station")
+                .producerName("producer")
+                .lingerMs(-1);
+
+        assertThrows(MemphisException.class,
+                builder::build,
+                "Expected ProducerOptions.Builder.build() to throw MemphisException if lingerMs is negative");
+    }
+
+    @Test
+    public void failFastWindowRejectsWhenFull() throws MemphisException {
+        InFlightWindow window = new InFlightWindow(1, ProducerOptions.BackpressureMode.FAIL_FAST);
+        window.acquire();
+        assertEquals(window.inFlight(), 1);
+        assertThrows(MemphisException.class, window::acquire);
+
+        window.release();
+        window.acquire();
+        assertEquals(window.inFlight(), 1);
+    }
+}
@@ -0,0 +1,180 @@
+package dev.memphis.sdk.producer;
+
+import io.nats.client.Connection;
+import io.nats.client.JetStream;
+import io.nats.client.Message;
+import io.nats.client.api.PublishAck;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProducerRunnableTest {
+    private final MessageTemplate template = new MessageTemplate("station", "connection-id", "producer", List.of(1, 2));
+    private final List<String> published = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Long> publishedAt = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService acks = Executors.newSingleThreadScheduledExecutor();
+    private volatile long publishDelayMs = 0;
+    private volatile Connection.Status status = Connection.Status.CONNECTED;
+
+    private final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+            (proxy, method, args) -> method.getName().equals("getStatus") ? status : null);
+
+    /**
+     * A JetStream context that records what is published and acknowledges
+     * it after a delay.
+     */
+    private JetStream jetStream(long ackDelayMs) {
+        return (JetStream) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{JetStream.class}, (proxy, method, args) -> {
+            if(!method.getName().equals("publishAsync")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            Message msg = (Message) args[0];
+            if(publishDelayMs > 0) {
+                Thread.sleep(publishDelayMs);
+            }
+            if(msg.getSubject().equals(template.subject(0))) {
+                published.add(new String(msg.getData()));
+            } else {
+                publishedAt.putIfAbsent(new String(msg.getData()), System.nanoTime());
+            }
+            if(ackDelayMs == 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<PublishAck> ack = new CompletableFuture<>();
+            acks.schedule(() -> ack.complete(null), ackDelayMs, TimeUnit.MILLISECONDS);
+            return ack;
+        });
+    }
+
+    @Test
+    public void keepsOrderWhenProducerThreadSpills(@TempDir Path dir) throws Exception {
+        var options = new ProducerOptions.Builder()
+                .stationName("station")
+                .producerName("producer")
+                .lingerMs(1)
+                .build();
+        var queue = new MpscRingBuffer<NatsMessage>(4);
+        var runnable = new ProducerRunnable(jetStream(50), connection, queue, template,
+                new SpillLog(dir, 4096, 16 * 4096), options);
+        var thread = new Thread(runnable);
+        thread.start();
+
+        List<String> expected = new ArrayList<>();
+        int spilled = 0;
+        for(int i = 0; i < 40; i++) {
+            NatsMessage msg = template.build(template.subject(0), String.valueOf(i).getBytes());
+            if(!queue.offer(msg)) {
+                assertTrue(runnable.spillFromProducer(msg));
+                spilled++;
+            }
+            expected.add(String.valueOf(i));
+        }
+        runnable.cancel();
+        thread.join();
+        acks.shutdown();
+
+        assertTrue(spilled > 0);
+        assertEquals(published, expected);
+    }
+
+    @Test
+    public void flushesQuietPartitionWhileAnotherKeepsQueueBusy() throws Exception {
+        var options = new ProducerOptions.Builder()
+                .stationName("station")
+                .producerName("producer")
+                .lingerMs(20)
+                .maxBatchBytes(100)
+                .build();
+        var queue = new MpscRingBuffer<NatsMessage>(16);
+        publishDelayMs = 1;
+        var runnable = new ProducerRunnable(jetStream(0), connection, queue, template, null, options);
+        var thread = new Thread(runnable);
+        thread.start();
+
+        NatsMessage hot = template.build(template.subject(0), new byte[100]);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        Thread hotProducer = new Thread(() -> {
+            while(!publishedAt.containsKey("cold") && System.nanoTime() < deadline) {
+                queue.offer(hot);
+            }
+        });
+        hotProducer.start();
+
+        Thread.sleep(100);
+        NatsMessage cold = template.build(template.subject(1), "cold".getBytes());
+        while(!queue.offer(cold)) {
+            Thread.onSpinWait();
+        }
+        long coldQueuedAt = System.nanoTime();
+        hotProducer.join();
+        runnable.cancel();
+        thread.join();
+        acks.shutdown();
+
+        assertTrue(publishedAt.containsKey("cold"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(publishedAt.get("cold") - coldQueuedAt) < 500);
+    }
+
+    @Test
+    public void rejectsOnlyWhatDoesNotFitWhenSpillLogIsFull(@TempDir Path dir) throws Exception {
+        var options = new ProducerOptions.Builder()
+                .stationName("station")
+                .producerName("producer")
+                .lingerMs(1)
+                .build();
+        var queue = new MpscRingBuffer<NatsMessage>(4);
+        status = Connection.Status.DISCONNECTED;
+        var runnable = new ProducerRunnable(jetStream(0), connection, queue, template,
+                new SpillLog(dir, 4096, 4096), options);
+        var thread = new Thread(runnable);
+        thread.start();
+
+        // a producer thread in FAIL_FAST mode: messages that fit neither
+        // the queue nor the log are rejected, the others are kept
+        List<String> accepted = new ArrayList<>();
+        int rejected = 0;
+        for(int i = 0; i < 20; i++) {
+            byte[] payload = new byte[1000];
+            payload[0] = (byte) i;
+            NatsMessage msg = template.build(template.subject(0), payload);
+            if(queue.offer(msg) || runnable.spillFromProducer(msg)) {
+                accepted.add(new String(payload));
+            } else {
+                rejected++;
+            }
+            Thread.sleep(5);
+        }
+
+        assertTrue(rejected > 0);
+        assertFalse(runnable.hasError());
+        assertTrue(thread.isAlive());
+
+        status = Connection.Status.CONNECTED;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(published.size() < accepted.size() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        runnable.cancel();
+        thread.join();
+        acks.shutdown();
+
+        assertFalse(runnable.hasError());
+        assertEquals(published, accepted);
+    }
+}
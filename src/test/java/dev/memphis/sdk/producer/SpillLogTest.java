@@ -0,0 +1,138 @@
+package dev.memphis.sdk.producer;
+
+import dev.memphis.sdk.compression.CompressionCodec;
+import dev.memphis.sdk.compression.DeflateCodec;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillLogTest {
+    private static final int SEGMENT_BYTES = 4096;
+
+    private static NatsMessage message(int i) {
+        return new NatsMessage("station$1.final", null, null, ("message-" + i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String payload(SpillLog.Record record) {
+        return new String(record.payload, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void replaysInOrderAcrossSegments(@TempDir Path dir) throws IOException {
+        try(SpillLog log = new SpillLog(dir, SEGMENT_BYTES, 16 * SEGMENT_BYTES)) {
+            for(int i = 0; i < 500; i++) {
+                assertTrue(log.append(message(i)));
+            }
+
+            int next = 0;
+            while(!log.isEmpty()) {
+                List<SpillLog.Record> records = log.peek(64, Integer.MAX_VALUE);
+                for(SpillLog.Record record : records) {
+                    assertEquals(record.subject, "station$1.final");
+                    assertEquals(payload(record), "message-" + next++);
+                }
+                log.advance(records.size());
+            }
+            assertEquals(next, 500);
+        }
+    }
+
+    @Test
+    public void recyclesSegmentsAndRejectsWhenFull(@TempDir Path dir) throws IOException {
+        try(SpillLog log = new SpillLog(dir, SEGMENT_BYTES, 2 * SEGMENT_BYTES)) {
+            int appended = 0;
+            while(log.append(message(appended))) {
+                appended++;
+            }
+            assertFalse(log.append(message(appended)));
+
+            log.advance(appended);
+            assertTrue(log.isEmpty());
+            for(int i = 0; i < appended; i++) {
+                assertTrue(log.append(message(i)));
+            }
+        }
+
+        try(Stream<Path> files = Files.list(dir)) {
+            assertEquals(files.count(), 2);
+        }
+    }
+
+    @Test
+    public void recoversUnreplayedRecordsAfterReopen(@TempDir Path dir) throws IOException {
+        try(SpillLog log = new SpillLog(dir, SEGMENT_BYTES, 16 * SEGMENT_BYTES)) {
+            for(int i = 0; i < 200; i++) {
+                log.append(message(i));
+            }
+            log.advance(50);
+        }
+
+        try(SpillLog log = new SpillLog(dir, SEGMENT_BYTES, 16 * SEGMENT_BYTES)) {
+            List<SpillLog.Record> records = log.peek(Integer.MAX_VALUE, Integer.MAX_VALUE);
+            assertEquals(payload(records.get(records.size() - 1)), "message-199");
+            assertTrue(records.size() >= 150);
+        }
+    }
+
+    @Test
+    public void stopsAtCorruptedRecord(@TempDir Path dir) throws IOException {
+        try(SpillLog log = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES)) {
+            for(int i = 0; i < 3; i++) {
+                log.append(message(i));
+            }
+        }
+
+        Path segment;
+        try(Stream<Path> files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        int recordBytes = 8 + 3 + "station$1.final".length() + "message-0".length();
+        try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), 12 + recordBytes + recordBytes - 1);
+        }
+
+        try(SpillLog log = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES)) {
+            List<SpillLog.Record> records = log.peek(Integer.MAX_VALUE, Integer.MAX_VALUE);
+            assertEquals(records.size(), 1);
+            assertEquals(payload(records.get(0)), "message-0");
+        }
+    }
+
+    @Test
+    public void replaysWithTheCodecTheRecordWasWrittenWith(@TempDir Path dir) throws Exception {
+        var compressing = new MessageTemplate("station", "connection-id", "producer", List.of(1), new DeflateCodec(), 0);
+        byte[] large = "abcdefgh".repeat(100).getBytes(StandardCharsets.UTF_8);
+        try(SpillLog log = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES)) {
+            log.append(compressing.build(compressing.subject(0), large));
+            log.append(message(1));
+        }
+
+        var plain = new MessageTemplate("station", "connection-id", "producer", List.of(1));
+        try(SpillLog log = new SpillLog(dir, SEGMENT_BYTES, SEGMENT_BYTES)) {
+            List<SpillLog.Record> records = log.peek(Integer.MAX_VALUE, Integer.MAX_VALUE);
+            assertEquals(records.get(0).codec, DeflateCodec.NAME);
+            assertNull(records.get(1).codec);
+
+            Headers headers = plain.build(records.get(0)).getHeaders();
+            assertEquals(headers.getFirst(CompressionCodec.HEADER), DeflateCodec.NAME);
+            assertEquals(headers.getFirst("$memphis_producedBy"), "producer");
+            assertNull(plain.build(records.get(1)).getHeaders().getFirst(CompressionCodec.HEADER));
+        }
+    }
+}